@@ -0,0 +1,74 @@
+/**
+ * Description: Why a simulation aborted a task. The simulations collect one notice per abort
+ * instead of building the messages while they run; the report prints them (see Report.java).
+ */
+public class AbortNotice {
+    /* reasons, REASON_NAMES[reason] is the name used in the CSV and JSON reports */
+    public static final byte CLAIM_EXCEEDS_UNITS = 0; //Banker: initial claim larger than the units present
+    public static final byte REQUEST_EXCEEDS_CLAIM = 1; //Banker: request would take the task over its claim
+    public static final byte DEADLOCK = 2; //FIFO: aborted to break a deadlock
+    public static final String[] REASON_NAMES = {"claim_exceeds_units", "request_exceeds_claim", "deadlock"};
+
+    private String algorithm;
+    private byte reason;
+    private int cycle;
+    private int taskNum;
+    private int resourceType;
+    private int units; //units claimed, units held after the request, or units of the blocked request
+    private int limit; //units present, the claim, or units available
+
+    /*
+     *Class constructor
+     *@param: algorithm: "FIFO" or "Banker"
+     *@param: reason: one of the reasons above
+     *@param: cycle: cycle of the abort
+     *@param: taskNum, resourceType, units, limit: the task and the resource that made it abort
+     */
+    public AbortNotice(String algorithm, byte reason, int cycle, int taskNum, int resourceType, int units, int limit){
+	this.algorithm = algorithm;
+	this.reason = reason;
+	this.cycle = cycle;
+	this.taskNum = taskNum;
+	this.resourceType = resourceType;
+	this.units = units;
+	this.limit = limit;
+    }
+
+    /* getters */
+    public String getAlgorithm(){
+	return this.algorithm;
+    }
+    public byte getReason(){
+	return this.reason;
+    }
+    public String getReasonName(){
+	return REASON_NAMES[reason];
+    }
+    public int getCycle(){
+	return this.cycle;
+    }
+    public int getTaskNum(){
+	return this.taskNum;
+    }
+    public int getResourceType(){
+	return this.resourceType;
+    }
+    public int getUnits(){
+	return this.units;
+    }
+    public int getLimit(){
+	return this.limit;
+    }
+
+    /* message printed above the result table, null for deadlock aborts (they only show in the table) */
+    public String getMessage(){
+	switch(reason){
+	case CLAIM_EXCEEDS_UNITS:
+	    return "Banker aborts ask "+taskNum+" before run begins: \n\tclaim for resource "+resourceType+ " ("+units+") exceeds number of units present ("+limit+")\n";
+	case REQUEST_EXCEEDS_CLAIM:
+	    return "During cycle "+(cycle-1)+"-"+(cycle)+" of Banker's Algorithm: \n\tTask "+taskNum+"'s request exceeds initial claim; aborted\n";
+	default:
+	    return null;
+	}
+    }
+}//end_AbortNotice_class
@@ -0,0 +1,93 @@
+import java.util.Arrays;
+
+/**
+ * Description: Columnar store of all activities read from the input file.
+ * Activities are kept in three parallel arrays (opcode, resource type, units) instead of
+ * one object per activity. While the file is read activities are appended in input order;
+ * finish() then groups them by task (keeping their order), so the activities of task t
+ * are the indices getStart(t) to getEnd(t)-1. Tasks walk their activities with a cursor.
+ *
+ * The store is never changed after finish(), so the FIFO and Banker simulations share it,
+ * also when they run at the same time.
+ * For "compute" activities the resource type column holds the number of cycles.
+ */
+public class ActivityStore {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[] opcode = new byte[INITIAL_CAPACITY];
+    private int[] resource = new int[INITIAL_CAPACITY];
+    private int[] units = new int[INITIAL_CAPACITY];
+    private int[] task = new int[INITIAL_CAPACITY]; //task number of each activity, only needed until finish()
+    private int size = 0;
+    private int[] offsets = new int[1]; //offsets[t-1] is the first activity of task t, offsets[t] one past its last
+    private boolean finished = false;
+
+    /* append an activity of the task (in input order) */
+    public void add(int taskNum, byte op, int resourceType, int numOfUnits){
+	if(finished){
+	    throw new IllegalStateException("Activities can't be added after finish()");
+	}
+	if(size == opcode.length){
+	    int capacity = size*2;
+	    opcode = Arrays.copyOf(opcode, capacity);
+	    resource = Arrays.copyOf(resource, capacity);
+	    units = Arrays.copyOf(units, capacity);
+	    task = Arrays.copyOf(task, capacity);
+	}
+	opcode[size] = op;
+	resource[size] = resourceType;
+	units[size] = numOfUnits;
+	task[size] = taskNum;
+	size++;
+    }
+
+    /* group the activities by task with a stable counting sort and trim the arrays */
+    public void finish(){
+	int maxTask = 0;
+	for(int a = 0; a < size; a++){
+	    maxTask = Math.max(maxTask, task[a]);
+	}
+	offsets = new int[maxTask+1];
+	for(int a = 0; a < size; a++){
+	    offsets[task[a]]++;
+	}
+	for(int t = 1; t <= maxTask; t++){
+	    offsets[t] += offsets[t-1];
+	}
+	byte[] sortedOpcode = new byte[size];
+	int[] sortedResource = new int[size];
+	int[] sortedUnits = new int[size];
+	int[] next = Arrays.copyOf(offsets, maxTask); //next free slot of every task
+	for(int a = 0; a < size; a++){
+	    int k = next[task[a]-1]++;
+	    sortedOpcode[k] = opcode[a];
+	    sortedResource[k] = resource[a];
+	    sortedUnits[k] = units[a];
+	}
+	opcode = sortedOpcode;
+	resource = sortedResource;
+	units = sortedUnits;
+	task = null;
+	finished = true;
+    }
+
+    /* first activity of the task */
+    public int getStart(int taskNum){
+	return taskNum < offsets.length ? offsets[taskNum-1] : size;
+    }
+    /* one past the last activity of the task */
+    public int getEnd(int taskNum){
+	return taskNum < offsets.length ? offsets[taskNum] : size;
+    }
+
+    /* getters for the activity at index a */
+    public byte getOpcode(int a){
+	return this.opcode[a];
+    }
+    public int getResourceType(int a){
+	return this.resource[a];
+    }
+    public int getUnits(int a){
+	return this.units[a];
+    }
+}//end_ActivityStore_class
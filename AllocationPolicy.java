@@ -0,0 +1,47 @@
+import java.util.ArrayList;
+
+/**
+ * Description: Decisions of a resource allocation algorithm simulated by CycleEngine.
+ * The engine runs the cycles (computes, releases, terminations, the blocked and running
+ * lists, metrics and traces) and asks the policy what to do with every initiate and request,
+ * with the blocked tasks at the start of a cycle and with deadlocks at the end of it.
+ * A policy acts through the engine (grant, unblock, block, abort) and keeps whatever it
+ * needs of its own, e.g. the Banker's safety checker. FifoPolicy and BankerPolicy are the
+ * two algorithms of the program; a policy object is used for one simulation only.
+ */
+public interface AllocationPolicy {
+    /* name used in reports, metrics and traces ("FIFO", "Banker") */
+    String getName();
+
+    /* called once before the first cycle, every task is running */
+    void start(CycleEngine engine);
+
+    /* a cycle starts, the tasks that terminated last cycle have left the running tasks */
+    void startCycle(ArrayList<Banker.Task> terminated);
+
+    /* retry the requests of the blocked tasks (in the order they blocked), granted ones go through engine.unblock */
+    void retryBlocked(ArrayList<Banker.Task> blocked);
+
+    /* initiate activity of a running task: record the claim or abort the task */
+    void initiate(Banker.Task t, int resourceType, int units);
+
+    /* request of a running task (action is its activity): engine.grant, engine.block, engine.abort, or nothing to retry it next cycle */
+    void request(Banker.Task t, int action, int resourceType, int units);
+
+    /* the engine released units of a running task, they are available next cycle */
+    void release(Banker.Task t, int resourceType, int units);
+
+    /* the task stopped running to compute */
+    void suspend(Banker.Task t);
+
+    /* the task runs again from the next cycle (its compute ended or its request was granted) */
+    void resume(Banker.Task t);
+
+    /* the task terminated right after its compute, so it never runs again (tasks that terminate while
+     * running are passed to startCycle next cycle instead) */
+    void terminate(Banker.Task t);
+
+    /* end of cycle, before released units become available: detect and resolve deadlocks (engine.abort)
+     * everyTaskBlocked: no unfinished task is running or computing */
+    void endCycle(boolean everyTaskBlocked);
+}//end_AllocationPolicy_interface
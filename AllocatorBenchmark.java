@@ -0,0 +1,376 @@
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Description: Stress test and throughput benchmark of BankerAllocator.
+ *
+ * For every caller count a new allocator is shared by that many tasks, each of them running
+ * rounds of: declare random claims, acquire random parts of them one request at a time, release
+ * some units on the way, finish. In the blocking mode every task is a thread calling acquire; in
+ * the async mode the tasks are chains of acquireAsync futures run on a small pool, so there can be
+ * many more tasks than threads. The run fails (exit status 1) if a task is granted more than its
+ * claim, if no task makes progress for -stall seconds (the Banker's algorithm never deadlocks), or
+ * if not every unit is available again once all tasks finished and the allocator is closed.
+ * -units takes one count for every resource type or one for all of them; counts up to
+ * Integer.MAX_VALUE next to a scarce resource type, e.g. -resources 3 -units 2147483647,1,2147483647
+ * -claim 2147483647, with -Dbanker.validateSafety=true check the allocator on large unit counts.
+ * Before the runs a fixed case with such counts checks that two waiting requests of the same size
+ * of different resource types get their own safety check.
+ *
+ * Usage: java AllocatorBenchmark [-callers 1,4,16,64,256,1024] [-resources 4] [-units 64] [-claim 8]
+ *        [-requests 4] [-time 3] [-stall 10] [-seed 1] [-async true] [-pool 4]
+ */
+public class AllocatorBenchmark {
+    private static int[] callers = {1, 4, 16, 64, 256, 1024};
+    private static int resources = 4;
+    private static int[] units = {64}; //units present of every resource type, the last count is used for the resource types after it
+    private static int maxClaim = 8;
+    private static int requests = 4; //acquires per round
+    private static double seconds = 3;
+    private static double stallSeconds = 10;
+    private static long seed = 1;
+    private static boolean async = false;
+    private static int poolThreads = 4;
+
+    private static volatile boolean stop;
+    private static volatile String failure;
+    private static final AtomicLong operations = new AtomicLong(); //acquires, releases and finishes done
+
+    public static void main(String[] args) throws InterruptedException {
+	parseArgs(args);
+	boolean ok = largeUnitsCase();
+	System.out.printf("%-10s %8s %12s %14s %14s %10s%n", "Mode", "Callers", "Operations", "ops/s", "rounds", "Check");
+	for(int n : callers){
+	    ok &= run(n);
+	}
+	System.exit(ok ? 0 : 1);
+    }
+
+    /* one run with n tasks, returns false if a check failed */
+    private static boolean run(int n) throws InterruptedException {
+	int[] present = new int[resources];
+	for(int r = 0; r < resources; r++){
+	    present[r] = units[Math.min(r, units.length-1)];
+	}
+	BankerAllocator allocator = new BankerAllocator(present, n);
+	stop = false;
+	failure = null;
+	operations.set(0);
+	AtomicLong rounds = new AtomicLong();
+	CountDownLatch finished = new CountDownLatch(n);
+	Thread[] threads = null;
+	ExecutorService pool = null;
+	long start = System.nanoTime();
+	if(async){
+	    pool = Executors.newFixedThreadPool(poolThreads);
+	    for(int t = 1; t <= n; t++){
+		new AsyncTask(allocator, t, new Random(seed*31 + t), pool, rounds, finished).round();
+	    }
+	}
+	else{
+	    threads = new Thread[n];
+	    for(int t = 1; t <= n; t++){
+		threads[t-1] = new Thread(new BlockingTask(allocator, t, new Random(seed*31 + t), rounds, finished), "task-" + t);
+		threads[t-1].start();
+	    }
+	}
+	//run for the given time, watching for a stall
+	long end = start + (long)(seconds*1e9);
+	long lastCount = -1;
+	long lastProgress = System.nanoTime();
+	while(System.nanoTime() < end && failure == null){
+	    Thread.sleep(50);
+	    long count = operations.get();
+	    if(count != lastCount){
+		lastCount = count;
+		lastProgress = System.nanoTime();
+	    }
+	    else if(System.nanoTime() - lastProgress > stallSeconds*1e9){
+		failure = "no progress for " + stallSeconds + " s";
+	    }
+	}
+	stop = true;
+	long elapsed = System.nanoTime() - start;
+	long count = operations.get();
+	//let every task end its round
+	lastProgress = System.nanoTime();
+	while(!finished.await(50, TimeUnit.MILLISECONDS) && failure == null){
+	    long done = operations.get();
+	    if(done != lastCount){
+		lastCount = done;
+		lastProgress = System.nanoTime();
+	    }
+	    else if(System.nanoTime() - lastProgress > stallSeconds*1e9){
+		failure = "tasks still waiting " + stallSeconds + " s after the run";
+	    }
+	}
+	if(pool != null){
+	    pool.shutdown();
+	}
+	allocator.close();
+	for(int r = 1; r <= resources && failure == null; r++){
+	    if(allocator.getAvailable(r) != present[r-1]){
+		failure = allocator.getAvailable(r) + " of " + present[r-1] + " units of resource " + r + " available after every task finished";
+	    }
+	}
+	System.out.printf("%-10s %8d %12d %14.1f %14d %10s%n", async ? "async" : "blocking", n, count, count / (elapsed / 1e9), rounds.get(),
+			  failure == null ? "ok" : "FAILED");
+	if(failure != null){
+	    System.out.println("  " + failure);
+	    if(threads != null){
+		for(Thread thread : threads){
+		    thread.interrupt();
+		}
+	    }
+	    return false;
+	}
+	return true;
+    }
+
+    /*
+     *Units present {M, 1, M} with M = Integer.MAX_VALUE: Task 3 asks for 10 units of resource 1 and Task 2
+     *for 10 units of resource 3, both unsafe, and a release makes the allocator check them again in one
+     *pass. Both must still wait when the allocator is closed. Returns false if one was granted
+     */
+    private static boolean largeUnitsCase() throws InterruptedException {
+	int m = Integer.MAX_VALUE;
+	int[][] claims = {{35, 0, m-37}, {m-39, 0, m-14}, {m-3, 0, 32}};
+	int[][] held = {{32, 0, 22}, {14, 0, 31}, {38, 0, 0}};
+	BankerAllocator allocator = new BankerAllocator(new int[]{m, 1, m}, 3);
+	for(int t = 1; t <= 3; t++){
+	    allocator.declareClaims(t, claims[t-1]);
+	}
+	for(int t = 1; t <= 3; t++){
+	    for(int r = 1; r <= 3; r++){
+		allocator.acquire(t, r, held[t-1][r-1]);
+	    }
+	}
+	CompletableFuture<Void> first = allocator.acquireAsync(3, 1, 10);
+	CompletableFuture<Void> second = allocator.acquireAsync(2, 3, 10);
+	allocator.release(1, 1, 0); //units came back: every waiting request is checked again
+	allocator.close(); //handles the operations queued so far, then fails the waiting requests
+	boolean ok = true;
+	for(CompletableFuture<Void> request : java.util.Arrays.asList(first, second)){
+	    try{
+		request.join();
+		ok = false; //granted
+	    }
+	    catch(CancellationException e){ //still waiting when the allocator closed
+	    }
+	    catch(CompletionException e){
+		ok &= (e.getCause() instanceof CancellationException);
+	    }
+	}
+	System.out.println("Large unit counts: " + (ok ? "ok" : "FAILED, a request that isn't safe was granted"));
+	return ok;
+    }
+
+    /* claims of a new round: every resource type, from nothing to maxClaim (at most the units present) */
+    private static int[] randomClaims(Random rnd){
+	int[] claims = new int[resources];
+	for(int r = 0; r < resources; r++){
+	    long largest = Math.min(maxClaim, units[Math.min(r, units.length-1)]);
+	    claims[r] = (int)Math.floorMod(rnd.nextLong(), largest + 1); //largest can be Integer.MAX_VALUE
+	}
+	return claims;
+    }
+
+    /* resource type with claim left, 0 if there is none */
+    private static int pickResource(Random rnd, BankerAllocator allocator, int t, int[] claims){
+	int first = rnd.nextInt(resources);
+	for(int k = 0; k < resources; k++){
+	    int r = (first + k) % resources;
+	    if(allocator.getHeld(t, r+1) < claims[r]){
+		return r+1;
+	    }
+	}
+	return 0;
+    }
+
+    private static void checkClaim(BankerAllocator allocator, int t, int r, int[] claims){
+	if(allocator.getHeld(t, r) > claims[r-1]){
+	    failure = "Task " + t + " holds " + allocator.getHeld(t, r) + " units of resource " + r + " with a claim of " + claims[r-1];
+	}
+    }
+
+    /* a task on its own thread */
+    private static class BlockingTask implements Runnable {
+	private BankerAllocator allocator;
+	private int t;
+	private Random rnd;
+	private AtomicLong rounds;
+	private CountDownLatch finished;
+
+	BlockingTask(BankerAllocator allocator, int t, Random rnd, AtomicLong rounds, CountDownLatch finished){
+	    this.allocator = allocator;
+	    this.t = t;
+	    this.rnd = rnd;
+	    this.rounds = rounds;
+	    this.finished = finished;
+	}
+
+	public void run(){
+	    try{
+		while(!stop){
+		    int[] claims = randomClaims(rnd);
+		    allocator.declareClaims(t, claims);
+		    for(int k = 0; k < requests; k++){
+			int r = pickResource(rnd, allocator, t, claims);
+			if(r == 0){
+			    break;
+			}
+			allocator.acquire(t, r, 1 + rnd.nextInt(claims[r-1] - allocator.getHeld(t, r)));
+			checkClaim(allocator, t, r, claims);
+			operations.incrementAndGet();
+			if(rnd.nextInt(4) == 0){ //give part of it back
+			    allocator.release(t, r, 1 + rnd.nextInt(allocator.getHeld(t, r)));
+			    operations.incrementAndGet();
+			}
+		    }
+		    allocator.finish(t);
+		    operations.incrementAndGet();
+		    rounds.incrementAndGet();
+		}
+	    }
+	    catch(InterruptedException e){ //the run failed
+	    }
+	    catch(RuntimeException e){
+		failure = "Task " + t + ": " + e;
+	    }
+	    finally{
+		finished.countDown();
+	    }
+	}
+    }//end_BlockingTask_class
+
+    /* a task as a chain of futures, every step runs on the pool */
+    private static class AsyncTask implements Runnable {
+	private BankerAllocator allocator;
+	private int t;
+	private Random rnd;
+	private ExecutorService pool;
+	private AtomicLong rounds;
+	private CountDownLatch finished;
+	private int[] claims;
+	private int left; //acquires left in the round
+	private int r; //resource type of the last acquire
+
+	AsyncTask(BankerAllocator allocator, int t, Random rnd, ExecutorService pool, AtomicLong rounds, CountDownLatch finished){
+	    this.allocator = allocator;
+	    this.t = t;
+	    this.rnd = rnd;
+	    this.pool = pool;
+	    this.rounds = rounds;
+	    this.finished = finished;
+	}
+
+	/* starts a round, or stops */
+	void round(){
+	    if(stop){
+		finished.countDown();
+		return;
+	    }
+	    claims = randomClaims(rnd);
+	    allocator.declareClaims(t, claims);
+	    left = requests;
+	    next();
+	}
+
+	/* next acquire of the round, or finish */
+	private void next(){
+	    r = (left-- > 0) ? pickResource(rnd, allocator, t, claims) : 0;
+	    if(r == 0){
+		allocator.finish(t);
+		operations.incrementAndGet();
+		rounds.incrementAndGet();
+		round();
+		return;
+	    }
+	    CompletableFuture<Void> granted = allocator.acquireAsync(t, r, 1 + rnd.nextInt(claims[r-1] - allocator.getHeld(t, r)));
+	    granted.whenCompleteAsync(new java.util.function.BiConsumer<Void,Throwable>(){
+		    public void accept(Void v, Throwable e){
+			if(e != null){
+			    failure = "Task " + t + ": " + e;
+			    allocator.finish(t);
+			    finished.countDown();
+			    return;
+			}
+			run();
+		    }
+		}, pool);
+	}
+
+	/* the acquire was granted */
+	public void run(){
+	    try{
+		checkClaim(allocator, t, r, claims);
+		operations.incrementAndGet();
+		if(rnd.nextInt(4) == 0){
+		    allocator.release(t, r, 1 + rnd.nextInt(allocator.getHeld(t, r)));
+		    operations.incrementAndGet();
+		}
+		next();
+	    }
+	    catch(RuntimeException e){
+		failure = "Task " + t + ": " + e;
+		allocator.finish(t);
+		finished.countDown();
+	    }
+	}
+    }//end_AsyncTask_class
+
+    private static void parseArgs(String[] args){
+	for(int i = 0; i+1 < args.length; i += 2){
+	    String value = args[i+1];
+	    switch(args[i]){
+	    case "-callers":
+		String[] parts = value.split(",");
+		callers = new int[parts.length];
+		for(int k = 0; k < parts.length; k++){
+		    callers[k] = Integer.parseInt(parts[k].trim());
+		}
+		break;
+	    case "-resources":
+		resources = Integer.parseInt(value);
+		break;
+	    case "-units":
+		String[] counts = value.split(",");
+		units = new int[counts.length];
+		for(int k = 0; k < counts.length; k++){
+		    units[k] = Integer.parseInt(counts[k].trim());
+		}
+		break;
+	    case "-claim":
+		maxClaim = Integer.parseInt(value);
+		break;
+	    case "-requests":
+		requests = Integer.parseInt(value);
+		break;
+	    case "-time":
+		seconds = Double.parseDouble(value);
+		break;
+	    case "-stall":
+		stallSeconds = Double.parseDouble(value);
+		break;
+	    case "-seed":
+		seed = Long.parseLong(value);
+		break;
+	    case "-async":
+		async = Boolean.parseBoolean(value);
+		break;
+	    case "-pool":
+		poolThreads = Integer.parseInt(value);
+		break;
+	    default:
+		throw new IllegalArgumentException("Unknown option " + args[i]);
+	    }
+	}
+    }
+}//end_AllocatorBenchmark_class
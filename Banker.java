@@ -1,59 +1,110 @@
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.Scanner;
-import java.io.File;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 
 /**
  * Description: The program simulates two resource allocation algorithms 
  * an optimistic resource manager and Dijkstra's Banker's algorithm
  *
+ * A Banker object holds everything of one simulation (input, resource states, tasks and
+ * output), so several inputs can be simulated at the same time in one process (see -batch)
+ *
  * @author: Cary Wu
  */
 public class Banker {
-    static int numOfTasks;
-    static int numOfResources;
-    static String abortedMsgs = "";
-    //2 separate copies of resources list and tasks list with different references
-    static ArrayList<Integer> resourcesFIFO = new ArrayList<Integer>(); //value at index i corresponds to number of units there are for resource type i+1
-    static ArrayList<Integer> resourcesBanker = new ArrayList<Integer>();
-    static ArrayList<Task> tasksFIFO = new ArrayList<Task>();
-    static ArrayList<Task> tasksBanker = new ArrayList<Task>();
-
-
-    /*
-     *Each Activity is implemented as an Activity object
-     */
-    public class Activity {
-	/* attributes */
-	private String name;
-	private int resourceType;
-	private int units;
-
-	/* getters */
-	private String getName(){
-	    return this.name;
-	}
-	private int getResourceType(){
-	    return this.resourceType;
-	}
-	private int getUnits(){
-	    return this.units;
+    /* activity opcodes, ACTIVITY_NAMES[opcode] is the name used in the input file */
+    static final byte INITIATE = 0;
+    static final byte REQUEST = 1;
+    static final byte RELEASE = 2;
+    static final byte COMPUTE = 3;
+    static final byte TERMINATE = 4;
+    static final String[] ACTIVITY_NAMES = {"initiate", "request", "release", "compute", "terminate"};
+    int numOfTasks;
+    int numOfResources;
+    ArrayList<AbortNotice> abortsFIFO = new ArrayList<AbortNotice>(); //why tasks were aborted, one list per simulation
+    ArrayList<AbortNotice> abortsBanker = new ArrayList<AbortNotice>();
+    //2 separate copies of resource state and tasks list with different references
+    ResourceState stateFIFO = new ResourceState(0, 0); //available units, allocations and claims of the FIFO simulation
+    ResourceState stateBanker = new ResourceState(0, 0);
+    ActivityStore activities = new ActivityStore(); //activities of all tasks, shared by both simulations
+    ArrayList<Task> tasksFIFO = new ArrayList<Task>();
+    ArrayList<Task> tasksBanker = new ArrayList<Task>();
+    private PrintStream out; //where errors and the results of the simulation are printed
+    String inputName; //name of the input file, trace files are written next to it
+    SimulationMetrics metricsFIFO; //metrics of the last run of each simulation, null unless metrics are collected
+    SimulationMetrics metricsBanker;
+    TaskAnalysis analysis; //resource types used by every task, found when the Banker simulation looks for groups of tasks (see getAnalysis)
+    ResourceComponents.Timeline timeline; //null unless this is the input of one component of another input (see BankerByComponent)
+    //number of inputs simulated at the same time in batch mode (-Dbanker.threads=n, default one per core)
+    static int threads = Integer.getInteger("banker.threads", Runtime.getRuntime().availableProcessors());
+    //FIFO and Banker run at the same time on separate tasks and states (-Dbanker.sequential=true runs one after the other)
+    static boolean sequential = Boolean.getBoolean("banker.sequential");
+    //format of the results: text table, csv or json (-Dbanker.report=csv or json)
+    static String reportFormat = System.getProperty("banker.report", "text");
+    //collect metrics and write them next to the input file as inputFileName.metrics.json or .csv (-Dbanker.metrics=json or csv)
+    static String metricsFormat = System.getProperty("banker.metrics");
+    //write a binary trace of every allocator decision to inputFileName.FIFO.trace and .Banker.trace (-Dbanker.trace=true),
+    //through a ring buffer of banker.traceBuffer records
+    static boolean trace = Boolean.getBoolean("banker.trace");
+    static int traceBuffer = Integer.getInteger("banker.traceBuffer", 1 << 16);
+    //FIFO also looks for tasks that wait on each other while other tasks still run (-Dbanker.waitForGraph=true),
+    //otherwise a deadlock is only detected once every running task is blocked
+    static boolean waitForGraph = Boolean.getBoolean("banker.waitForGraph");
+    //Banker decides the requests of consecutive running tasks together (-Dbanker.batchAdmission=true), see BankerPolicy
+    static boolean batchAdmission = Boolean.getBoolean("banker.batchAdmission");
+    //memory of the cache of the safety checks of blocked Banker tasks in bytes (-Dbanker.safetyCacheBytes=n), 0 for no cache
+    static long safetyCacheBytes = Long.getLong("banker.safetyCacheBytes", 0);
+    //compare every answer of the incremental safety checker against isSafe (-Dbanker.validateSafety=true)
+    static boolean validateSafety = Boolean.getBoolean("banker.validateSafety");
+    //jump the clock over cycles in which nothing can happen (-Dbanker.stepEveryCycle=true steps through every cycle)
+    static boolean skipIdleCycles = !Boolean.getBoolean("banker.stepEveryCycle");
+    //the Banker simulates groups of tasks that share no resource type on their own (-Dbanker.shardComponents=true)
+    static boolean shardComponents = Boolean.getBoolean("banker.shardComponents");
+    //blocked tasks in the order they blocked
+    static final Comparator<Task> BLOCK_ORDER = new Comparator<Task>(){
+	public int compare(Task a, Task b){
+	    return Long.compare(a.blockOrder, b.blockOrder);
+	}
+    };
+    //tasks being computed ordered by the cycle their compute ends, then by the order they started computing
+    static final Comparator<Task> COMPUTE_ORDER = new Comparator<Task>(){
+	public int compare(Task a, Task b){
+	    if(a.wakeTime != b.wakeTime){
+		return Integer.compare(a.wakeTime, b.wakeTime);
+	    }
+	    return Long.compare(a.computeOrder, b.computeOrder);
 	}
+    };
 
-	/* Class constructor */
-	public Activity(String n, int r, int u){
-	    this.name = n;
-	    this.resourceType = r;
-	    this.units = u;
-	}
-	/* Empty Class constructor */
-	public Activity(){
-	}
+
+    /* Class constructors, output goes to standard output unless another stream is given */
+    public Banker(){
+	this(System.out);
+    }
+    public Banker(PrintStream out){
+	this.out = out;
     }
 
     /* 
@@ -64,11 +115,17 @@ public class Banker {
 	private int taskNum;
        	private int waitTime=0;
 	private int totalTime=0;
-	private Activity blockedActivity = new Activity();
+	private int blockedActivity = -1;
+	private boolean blocked = false;
+	private int blockedSince; //cycle in which the task was blocked
+	private long blockOrder; //blocked tasks are served in the order they were blocked
 	private boolean aborted = false;
-	private LinkedList<Activity> activitiesList = new LinkedList<Activity>(); //all actions are initially put into a queue
-	private ArrayList<Integer> allocatedR; //allocated resources
-	private ArrayList<Integer> claims; //the task's initial claims
+	private int cursor = 0; //next activity of the task in the activity store
+	private int lastActivity = 0; //one past the task's last activity
+	private boolean computing = false;
+	private int wakeTime; //cycle in which the task's compute ends
+	private long computeOrder; //tasks whose compute ends in the same cycle continue in the order they started computing
+	private ResourceState state; //holds the task's allocated resources and initial claims
 
 	/* getters, setters, other methods */
 	public int getTaskNum(){
@@ -80,84 +137,116 @@ public class Banker {
 	public int getTotalTime(){
 	    return this.totalTime;
 	}
-	public void incrementWait(){
-	    this.waitTime++;
+	/* wait time is counted when the task leaves the blocked list: it waited from the cycle it was blocked in */
+	public void block(int a, int cycle, long order){
+	    this.blocked = true;
+	    this.blockedActivity = a;
+	    this.blockedSince = cycle;
+	    this.blockOrder = order;
+	}
+	public int getBlockedSince(){
+	    return this.blockedSince;
+	}
+	public void unblock(int cycle){
+	    this.blocked = false;
+	    this.waitTime += cycle - this.blockedSince;
+	}
+	public boolean isBlocked(){
+	    return this.blocked;
+	}
+	public long getBlockOrder(){
+	    return this.blockOrder;
+	}
+	public void startCompute(int wake, long order){
+	    this.computing = true;
+	    this.wakeTime = wake;
+	    this.computeOrder = order;
+	}
+	public void endCompute(){
+	    this.computing = false;
+	}
+	public boolean isComputing(){
+	    return this.computing;
+	}
+	public int getWakeTime(){
+	    return this.wakeTime;
 	}
 	public void setTotalTime(int t){
 	    this.totalTime=t;
 	}
-	public LinkedList<Activity> getActivitiesList(){
-	    return this.activitiesList;
+	/* takes the times and the outcome of the same task simulated in a component (see Banker.BankerByComponent) */
+	public void setResult(Task t){
+	    this.totalTime = t.totalTime;
+	    this.waitTime = t.waitTime;
+	    this.aborted = t.aborted;
 	}
-	public Activity getNextActivity(){
-	    Activity activity = this.activitiesList.pollFirst();
+	/* activities are referred to by their index in the activity store */
+	public int getNextActivity(){
+	    int activity = viewNextActivity();
+	    this.cursor++;
 	    return activity;
 	}
-	public Activity viewNextActivity(){
-	    return this.activitiesList.get(0);
-	}
-	public void addActivity(Activity a){
-	    this.activitiesList.add(a);
+	public int viewNextActivity(){
+	    if(this.cursor >= this.lastActivity){
+		throw new NoSuchElementException("Task "+this.taskNum+" has no activities left");
+	    }
+	    return this.cursor;
 	}
-	public void setBlockedActivity(Activity a){
-	    this.blockedActivity = a;
+	public void setActivities(ActivityStore store){
+	    this.cursor = store.getStart(this.taskNum);
+	    this.lastActivity = store.getEnd(this.taskNum);
 	}
-	public Activity getBlockedActivity(){
+	public int getBlockedActivity(){
 	    return this.blockedActivity;
 	}
-	public ArrayList<Integer> getClaims(){
-	    return this.claims;
+	public int getClaim(int resourceType){
+	    return this.state.getClaim(this.taskNum, resourceType);
 	}
-	public ArrayList<Integer> getAllocatedR(){
-	    return this.allocatedR;
+	public int getAllocated(int resourceType){
+	    return this.state.getAllocated(this.taskNum, resourceType);
 	}
-	public void abort(){ 
+	public void abort(){ //allocated resources are freed by the caller with ResourceState.releaseAll
 	    this.aborted = true;
-	    //empty the tasks allocated resources
-	    if(this.allocatedR.size()<0){
-		for(int i=0;i<allocatedR.size();i++){
-		    this.allocatedR.set(i,0);
-		}
-	    }
 	}
 	public boolean isAborted(){
 	    return this.aborted;
 	}
 	public boolean terminate(){ //checks if next action is to terminate
-	    if(this.activitiesList.getFirst().getName().equals("terminate")){
+	    if(activities.getOpcode(viewNextActivity()) == TERMINATE){
 	      return true;
 	    }
 	    else{
 		return false;
 	    }
 	}
-	public void addAllocatedR(int resourceType, int amt){
-	    this.allocatedR.set(resourceType-1, this.allocatedR.get(resourceType-1)+amt);
-	}
-	public void removeAllocatedR(int resourceType, int amt){
-	    this.allocatedR.set(resourceType-1, this.allocatedR.get(resourceType-1)-amt);
-	}
 	public void setClaim(int resourceType, int amt){
-	    this.claims.set(resourceType-1, amt);
+	    this.state.setClaim(this.taskNum, resourceType, amt);
 	}
 	/* Class contrsuctor */
-	public Task(int taskNumber){
+	public Task(int taskNumber, ResourceState s){
 	    this.taskNum = taskNumber;
-	    this.allocatedR = new ArrayList<Integer>(Collections.nCopies(numOfResources,0));
-	    this.claims = new ArrayList<Integer>(Collections.nCopies(numOfResources,0));
+	    this.state = s;
 	}
 	/* Class constructor for deep cloning (creating a copy of the same object but with a 
-	 * different reference)
+	 * different reference). The copy keeps its allocations and claims in s, which should be a
+	 * copy of the state of t (see ResourceState(ResourceState)) so the two tasks share nothing
+	 * but the read-only activity store
 	 */
-	public Task(Task t){
+	public Task(Task t, ResourceState s){
 	    this.taskNum = t.taskNum;
 	    this.waitTime = t.waitTime;
 	    this.totalTime = t.totalTime;
 	    this.aborted = t.aborted;
 	    this.blockedActivity = t.blockedActivity;
-	    this.activitiesList = t.activitiesList;
-	    this.allocatedR = t.allocatedR; 
-	    this.claims = t.claims;
+	    this.blocked = t.blocked;
+	    this.blockedSince = t.blockedSince;
+	    this.blockOrder = t.blockOrder;
+	    this.cursor = t.cursor;
+	    this.lastActivity = t.lastActivity;
+	    this.computing = t.computing;
+	    this.wakeTime = t.wakeTime;
+	    this.computeOrder = t.computeOrder;
+	    this.state = s;
 	}
 	
 	/* give info about the Task */
@@ -166,8 +255,8 @@ public class Banker {
 	    if (this.aborted == true){
 		return str + " has been aborted";
 	    }
-	    for (Activity a : this.activitiesList) {
-		str += a.getName() + " " + a.getResourceType() + " " + a.getUnits() + "\n";
+	    for (int a = this.cursor; a < this.lastActivity; a++) {
+		str += ACTIVITY_NAMES[activities.getOpcode(a)] + " " + activities.getResourceType(a) + " " + activities.getUnits(a) + "\n";
 	    }
 	    return str;
 	}
@@ -183,303 +272,83 @@ public class Banker {
     
     /*
      *Read input file that has the input format of what's described in the spec
+     *The file can be gzip compressed. Activities are stored once in the activity store and shared by both lists of tasks
      *@param: name of file 
-     *@return: list of task objects
+     *@return: true if the whole file was read, false if it couldn't be (the error is printed)
      */
-    public void readInputFile(String filename) {
+    public boolean readInputFile(String filename) {
 	
-	try{
-	     File file = new File(filename);
-	     Scanner sc = new Scanner(file);
+	inputName = filename;
+	try (InputParser sc = new InputParser(filename)) { //plain text or gzip
 	     int t = sc.nextInt(); //number of tasks
 	     int r = sc.nextInt(); //number of types of resources
 	     numOfTasks = t;
 	     numOfResources = r;
+	     activities = new ActivityStore();
+	     stateFIFO = new ResourceState(t, r);
+	     stateBanker = new ResourceState(t, r);
 	     for (int i=0; i<r; i++){
 		 int quantity = sc.nextInt();
-		 resourcesFIFO.add(i,quantity);
-		 resourcesBanker.add(i,quantity);
+		 stateFIFO.setAvailable(i+1, quantity);
+		 stateBanker.setAvailable(i+1, quantity);
 	     }
 	     //System.out.println(t+" "+ r);
 	     while(sc.hasNext()){
-		 String activity = sc.next();
+		 byte activity = sc.nextActivity();
 		 int taskNumber = sc.nextInt();
 		 int resourceType = sc.nextInt();
 		 int units = sc.nextInt();
-		 Activity newActivity1 = new Activity(activity, resourceType, units);
-		 Activity newActivity2 = new Activity(activity, resourceType, units);
-		 //System.out.println(activity+" "+ taskNumber + " " + resourceType + " " + units);
-		 if (activity.equals("initiate")){ //create new Task object
+		 //System.out.println(ACTIVITY_NAMES[activity]+" "+ taskNumber + " " + resourceType + " " + units);
+		 if (activity == INITIATE){ //create new Task object
 		     if(tasksFIFO.size() == (taskNumber-1)){
-			 Task newTask1 = new Task(taskNumber);
-			 Task newTask2 = new Task(taskNumber);
+			 Task newTask1 = new Task(taskNumber, stateFIFO);
+			 Task newTask2 = new Task(taskNumber, stateBanker);
 			 tasksFIFO.add(newTask1);
 			 tasksBanker.add(newTask2);
 		     }
 		 }
 		 int index = taskNumber - 1;
-		 if (index >= 0){
-		     tasksFIFO.get(index).addActivity(newActivity1);
-		     tasksBanker.get(index).addActivity(newActivity2);
+		 if (index >= 0 && index < tasksFIFO.size()){
+		     activities.add(taskNumber, activity, resourceType, units);
 		 }
 		 else {
-		     System.out.println("Error: invalid task number");
+		     out.println("Error: invalid task number");
 		 }
 	     
 	     }
+	     //group activities by task and point every task to its activities
+	     activities.finish();
+	     for (int i=0; i<tasksFIFO.size(); i++){
+		 tasksFIFO.get(i).setActivities(activities);
+		 tasksBanker.get(i).setActivities(activities);
+	     }
+	     return true;
       	}//end_try_block
 	
-	catch (FileNotFoundException e){
-	    System.out.println("FileNotFound error");
+	catch (FileNotFoundException | NoSuchFileException e){
+	    out.println("FileNotFound error");
 	}//end_catch_block
-	
+	catch (IOException e){
+	    out.println("Error reading input: " + e.getMessage());
+	}
+	return false; //the activities weren't grouped by task, there is nothing to simulate
     }//end_readInputFile_method
 	
     
     /*
      * Simulation of optimistic resource manager using FIFO algorithm
-     * The method does resource allocation by satisfying a request if 
-     * possible and if not, the task is blocked. When a release occurs,
-     * the resource manager tries to satisfy pending requests. After 
-     * satisfying the request of the blocked task, the tasks is enteresd back into 
-     * the queue of running tasks. It checks for deadlock and fixes by repeatedly aborting the task
-     * with lowest task number and freeing its resources until no deadlock remains
+     * A request is granted if possible and if not, the task is blocked. When a release occurs,
+     * the resource manager tries to satisfy pending requests. It checks for deadlock and fixes it by
+     * aborting the tasks with lowest task number (see FifoPolicy)
      *
      *@param: list of task objects
-     *@param: list of quantity of resources
+     *@param: resource state (available units, allocations) of the tasks
      *@return: list of terminated task objects with updated wait times
      */
-    public ArrayList<Task> FIFO (ArrayList<Task> listOfTasks, ArrayList<Integer> resources) {
-	
-	ArrayList<Integer> resourcesMap = resources;
-	ArrayList<Task> unblockedTasks = listOfTasks;
-	ArrayList<Task> blockedTasks = new ArrayList<Task>();
-	ArrayList<Task> completedTasks = new ArrayList<Task>();
-	LinkedHashMap<Task,Integer> beingComputed = new LinkedHashMap<Task,Integer>();
-	int cycle = 0;
-	ArrayList<Task> terminatedTasks = new ArrayList<Task>(); //tasks that released resources and terminated
-	ArrayList<Integer> released = new ArrayList<Integer>(Collections.nCopies(numOfResources, 0)); //initialize all values to 0
-	boolean keepGoing = true;
-	
-	while (keepGoing) {
-	    int taskNum;
-	    ArrayList<Task> temp = new ArrayList<Task>(); //list of tasks to add back to running list of tasks at the end of cycle
-	    Iterator<Task> j = blockedTasks.iterator();
-	    Iterator<Task> k = completedTasks.iterator();
-	    Iterator iter = beingComputed.entrySet().iterator();
-	    Activity blockedActivity = new Activity();
-	    Activity action = new Activity();
-	    String activityType;
-	    int resourceType, numOfUnits;
-	    int avail=0;
-	     
-	    //System.out.println("During " + cycle + "-"+ (cycle+1));
-	    cycle++;
-
-	    //clear list of released resources
-	    for(int i=0; i<released.size(); i++){
-		released.set(i,0);
-	    }
-
-	    //remove tasks that released and terminated from queue of running tasks
-	    for(Task term : terminatedTasks){
-		unblockedTasks.remove(term);
-	    }
-
-	    //update delayed number of cycles for tasks being computed
-	    while(iter.hasNext()){
-		HashMap.Entry mapElement = (HashMap.Entry)iter.next();
-		Task task = (Task)mapElement.getKey();
-		//System.out.println("Task "+task.getTaskNum()+" delayed "+beingComputed.get(task));
-		beingComputed.replace(task, beingComputed.get(task)-1); //decrement cycle
-		if(beingComputed.get(task) == 0){ //end of compute 
-		    iter.remove();
-		    if(task.terminate()){ //if next activity is terminate, terminate.
-			//System.out.println("\tTask "+task.getTaskNum()+" terminates at cycle "+cycle);
-			task.setTotalTime(cycle);
-			completedTasks.add(task);
-		    }
-		    else{ //add back into queue of running tasks
-			temp.add(task);
-		    }
-		}
-	    }
-	    
-	    //try to satisfy blocked tasks 
-	    if (!blockedTasks.isEmpty()){
-		//System.out.println("\tFirst check blocked tasks:");
-		    while(j.hasNext()){
-      			Task blocked = j.next();
-			//increment wait times for blocked tasks
-			blocked.incrementWait();
-			//System.out.print("\t");
-			taskNum = blocked.getTaskNum();
-			blockedActivity = blocked.getBlockedActivity();
-			activityType = blockedActivity.getName();
-			resourceType = blockedActivity.getResourceType();
-			numOfUnits = blockedActivity.getUnits();
-			avail = resourcesMap.get(resourceType-1);
-     			if(activityType.equals("request")) { //try to grant request
-			    if(numOfUnits <= avail){//grant request
-				avail = avail - numOfUnits;
-				resourcesMap.set(resourceType-1, avail);
-				blocked.addAllocatedR(resourceType, numOfUnits);
-				//System.out.print("\tTask "+taskNum+" completes its request ");
-				//System.out.printf("(resource[%d]: requested = %d, remaining = %d)\n", resourceType, numOfUnits, avail);
-				j.remove();
-				temp.add(blocked); 
-			    }
-			
-			    else{
-				//System.out.println("\tTask "+taskNum+" request still cannot be granted.");
-			    }		
-			}
-			    
-		    }
-	    }
-	    Iterator<Task> i = unblockedTasks.iterator();
-	    while(i.hasNext()){
-		//System.out.print("\t");
-		Task t = i.next();
-		taskNum = t.getTaskNum();
-      		action = t.getNextActivity();
-	        resourceType = action.getResourceType();
-		numOfUnits = action.getUnits();
-		if (action.getName().equals("compute")){
-		    avail = 0;
-		}
-		else{
-		    avail = resourcesMap.get(resourceType-1); //num of avail units of this resource
-		}
-		switch (action.getName()) {
-		case "initiate": //FIFO algorithm ignores initiate avtivity
-		    //System.out.println("Task "+taskNum+ " does initialization");
-		    break;
-
-		case "request":
-
-      		    if (numOfUnits <= avail) { //grant request
-			avail = avail - numOfUnits;
-			resourcesMap.set(resourceType-1, avail);
-			t.addAllocatedR(resourceType, numOfUnits);
-			//System.out.print("Task "+taskNum+" completes its request ");
-			//System.out.printf("(resource[%d]: requested = %d, remaining = %d)\n",resourceType,numOfUnits, avail); 
-		    }
-		    else { //block task
-			blockedTasks.add(t);
-			i.remove();
-			t.setBlockedActivity(action);
-			//System.out.print("Task "+taskNum+" waiting ");
-			//System.out.printf("(resource[%d]: requested = %d, available = %d)\n",resourceType,numOfUnits,avail);
-			
-		    }
-		    break;
-		    
-		case "release": //free the task's resources 
-		    avail = avail+numOfUnits;
-		    released.set(resourceType-1, released.get(resourceType-1)+numOfUnits);
-		    t.removeAllocatedR(resourceType, numOfUnits);
-		    //System.out.print("Task "+taskNum+" completes its release ");
-		    //System.out.printf("(resource[%d]: released = %d, available next cycle = %d)\n", resourceType, numOfUnits, avail); 
-		    
-		    break;
-
-		case "compute": //task is delayed for certain num of cycles
-		    int numCycles = resourceType; //this value for "compute" activity corresponds to num-of-cycles
-		    if(numCycles > 1){
-			beingComputed.put(t,numCycles-1); //reduce number of cycles by 1 to account for this cycle
-		    }
-		    else if(numCycles == 1){
-			temp.add(t);
-		    }
-		    i.remove();
-		    //System.out.println("Task "+taskNum+" delayed "+numCycles+".");
-		    break;
-		}//end_switch
-	    
-		if(t.terminate()){ //the next activity is to terminate which doesn't take a cycle so terminate 
-		    if(beingComputed.containsKey(t)){ //accounts for if tasks that are being computed but will terminate after, ignore them
-			continue;
-		    }
-		    //System.out.println("\tTask "+taskNum+" terminates at cycle "+cycle);
-		    t.setTotalTime(cycle); //set finish time 
-			if(unblockedTasks.contains(t)){
-			    completedTasks.add(t);
-			    terminatedTasks.add(t);
-			}
-			else if (temp.contains(t)){ //computed for 1 cycle terminates
-			    temp.remove(t);
-			    completedTasks.add(t);
-			}
-		}
-		
-	    }
-	    
-	    //add tasks that were unblocked this cycle back into unblocked list
-	    for(Task p : temp){
-		unblockedTasks.add(p);
-	    }
-	    temp.clear();
-
-	    
-	    //detect deadlock and try to fix it using algorithm described in spec
-	    if((completedTasks.size()!= numOfTasks) && (unblockedTasks.isEmpty()) && beingComputed.isEmpty()){
-		boolean deadlocked = true;
-		//get blocked task with lowest task num
-		while(deadlocked){
-		    Task minPriority = blockedTasks.get(0); //task with lowest task number in blocked list
-		    for(Task t : blockedTasks){
-			if(t.getTaskNum() < minPriority.getTaskNum()){
-			    minPriority = t;
-			}
-		   }
-		    
-		    //free up all its resources and abort task
-		    for(int w = 0; w < minPriority.getAllocatedR().size(); w++){
-			released.set(w, released.get(w)+minPriority.getAllocatedR().get(w));
-		    }
-		    minPriority.abort();
-		    //System.out.println("Optimistic Resoure Manager aborts Task "+minPriority.getTaskNum() +" because a deadlock was detected according to spec. Its resources are available next cycle ("+cycle+"-"+(cycle+1)+")");
-		    completedTasks.add(minPriority);
-		    blockedTasks.remove(minPriority);
-
-		    //check if deadlock remains after removing the task
-		    Task next = blockedTasks.get(0);
-		    Activity blockedAct = next.getBlockedActivity();
-		    resourceType = blockedAct.getResourceType();
-		    numOfUnits=  blockedAct.getUnits(); 
-		    if(blockedAct.getName().equals("request")){
-			//check if there are enough units to grant request with the recently aborted tasks' released units taken into account
-			avail = resourcesMap.get(resourceType-1) + released.get(resourceType-1);
-			if(numOfUnits <= avail){
-			    
-			    deadlocked = false; //no longer deadlocked
-			}
-			else{
-			    deadlocked = true;
-			}
-		    }	
-		
-		}//end_while(deadlocked)
-	    }//end_deadlock_detection
-   
-	    //update available resources from tasks that released for the next
-	    for (int r=0; r<numOfResources; r++){
-      
-		int newVal = resourcesMap.get(r) + released.get(r);
-		resourcesMap.set(r, newVal);
-	    }
-	    //System.out.println("size of completed tasks: "+completedTasks.size());
-	    if(completedTasks.size()==numOfTasks){ //tell program to stop
-		keepGoing=false;
-	    }
-
-	    
-	}//end_while
-
-	//sort list of completed tasks
-	Collections.sort(completedTasks);
-	return completedTasks;
+    public ArrayList<Task> FIFO (ArrayList<Task> listOfTasks, ResourceState state) {
+	CycleEngine engine = new CycleEngine(this, new FifoPolicy(), state, abortsFIFO);
+	metricsFIFO = engine.getMetrics();
+	return engine.run(listOfTasks);
     }
     /*
      *Detects if a state is safe, used for Banker's algorithm
@@ -487,33 +356,26 @@ public class Banker {
      *Assume this task finishes and releases its resources. Repeat these steps until either all tasks terminate (the initial state is safe) or
      *no task is left whose resources can be met (unsafe).
      *
-     *@param: tasksList: current list of tasks
-     *@param: resources: list of number of currently available resources 
+     *@param: tasks: current list of tasks
+     *@param: resources: number of currently available units of each resource type
      *return: true if state is safe, false otherwise
      */
-    public boolean isSafe(ArrayList<Task> tasksList, ArrayList<Integer> resources){
-        ArrayList<Task> tasks = new ArrayList<Task>();
-	ArrayList<Integer> availR = new ArrayList<Integer>();
-	//make copies of lists having different references from original
-	for(Task task : tasksList){
-	    tasks.add(new Task(task));
-	}
-	for(Integer i : resources){
-	    availR.add(i);
-	}
+    public boolean isSafe(ArrayList<Task> tasks, int[] resources){
+	//copy of available resources having a different reference from original
+	int[] availR = resources.clone();
 	//matrix of additional resources each task needs to fulfill its claims
-	int[][] needMatrix = new int[tasks.size()][availR.size()];
+	int[][] needMatrix = new int[tasks.size()][availR.length];
 	/*
 	System.out.println("Need Matrix:");
 	*/
 	for(int n = 0; n <tasks.size(); n++){
-	    for(int m=0; m < availR.size(); m++){
-		int need = tasks.get(n).getClaims().get(m) - tasks.get(n).getAllocatedR().get(m);
+	    for(int m=0; m < availR.length; m++){
+		int need = tasks.get(n).getClaim(m+1) - tasks.get(n).getAllocated(m+1);
 		needMatrix[n][m] = need;
 	    }
 	}
         
-	boolean[] done = new boolean[numOfTasks]; //all values by default is false
+	boolean[] done = new boolean[tasks.size()]; //all values by default is false
 	int[] possibleSeq = new int[tasks.size()];
 	int foo = 0;
 	//keepgoing until all tasks are either done or system is unsafe
@@ -523,15 +385,15 @@ public class Banker {
 	    for(int t = 0; t < tasks.size(); t++){
 		if(!done[t]){
 		    int r = 0;
-		    for(r = 0; r < availR.size(); r++){
-			if(needMatrix[t][r] > availR.get(r)){
+		    for(r = 0; r < availR.length; r++){
+			if(needMatrix[t][r] > availR[r]){
 			    break;
 			}
 		    }
 		    //all needs of task can be granted
-		    if(r==availR.size()){
-			for(int x=0; x<availR.size(); x++){
-			    availR.set(x, availR.get(x)+tasks.get(t).getAllocatedR().get(x));
+		    if(r==availR.length){
+			for(int x=0; x<availR.length; x++){
+			    availR[x] += tasks.get(t).getAllocated(x+1);
 			}
 			possibleSeq[foo++] = tasks.get(t).getTaskNum();
 			done[t] = true;
@@ -548,306 +410,358 @@ public class Banker {
 	return true;
     }//end_isSafe
 
+
     
     /*
      * Simulation of Banker's Algorithm
      * Description: Banker's algorithm does resource allocation by trying to avoid deadlocks by checking if granting
      * a request is an unsafe state and will eventually lead to deadlock. If a request is unsafe, it is blocked. 
-     * At the beginning of each cycle, Banker will first check if it can grant pending requests and if it can, it grants the request
-     * and adds the task back to the list of running tasks. Banker uses the isSafe method to check if a state is safe.
+     * At the beginning of each cycle, Banker will first check if it can grant pending requests (see BankerPolicy)
      *
      *@param: list of task objects
-     *@param: list of quantity of resources
+     *@param: resource state (available units, allocations, claims) of the tasks
      *@return: list of terminated task objects with updated wait times
      */
-     
-    public ArrayList<Task> Banker(ArrayList<Task> listOfTasks, ArrayList<Integer> resources) {
-	int cycle = 0;
-	ArrayList<Task> unblockedTasks = listOfTasks;
-	ArrayList<Task> blockedTasks = new ArrayList<Task>();
-	ArrayList<Task> completedTasks = new ArrayList<Task>();
-	ArrayList<Integer> tempRList = new ArrayList<Integer>();
-	LinkedHashMap<Task,Integer> beingComputed = new LinkedHashMap<Task,Integer>();
-	ArrayList<Integer> resourcesMap = resources;  
-	ArrayList<Integer> released = new ArrayList<Integer>(Collections.nCopies(numOfResources,0));
-	ArrayList<Task> terminatedTasks = new ArrayList<Task>(); //tasks that released resources and terminated
-	boolean keepGoing = true;
-        
-	while (keepGoing) {
-	    int taskNum;
-	    ArrayList<Task> temp = new ArrayList<Task>();
-	    Iterator<Task> j = blockedTasks.iterator();
-	    Iterator<Task> k = completedTasks.iterator();
-	    Iterator iter = beingComputed.entrySet().iterator();
-	    Activity blockedActivity = new Activity();
-	    Activity action = new Activity();
-	    String activityType;
-	    int resourceType, numOfUnits;
-	    int avail=0;
-	    boolean safe; 
-	    //System.out.println("During " + cycle + "-"+ (cycle+1));
-	    cycle++;
-	    
-	    //clear list of released resources
-	    for(int i=0; i<released.size(); i++){
-		released.set(i,0);
+    public ArrayList<Task> Banker(ArrayList<Task> listOfTasks, ResourceState state) {
+	//metrics and traces describe one run, so they keep the whole input together, and so does an input with missing tasks;
+	//a component isn't split again
+	if(shardComponents && metricsFormat == null && !trace && listOfTasks.size() == numOfTasks && timeline == null){
+	    ResourceComponents components = new ResourceComponents(getAnalysis(), numOfResources);
+	    if(components.getCount() > 1){
+		return BankerByComponent(listOfTasks, state, components);
 	    }
-	    //remove tasks that released and terminated
-	    for(Task term : terminatedTasks){
-		unblockedTasks.remove(term);
-	    }
-	    
-	    while(iter.hasNext()){
-		HashMap.Entry mapElement = (HashMap.Entry)iter.next();
-		Task task = (Task)mapElement.getKey();
-		//System.out.println("Task "+task.getTaskNum()+" delayed "+beingComputed.get(task));
-		beingComputed.replace(task, beingComputed.get(task)-1); //decrement cycle
-	        if(beingComputed.get(task) == 0){
-		    iter.remove();
-		    if(task.terminate()){
-			//System.out.println("\tTask "+task.getTaskNum()+" terminates at cycle "+cycle);
-			task.setTotalTime(cycle);
-			completedTasks.add(task);
-		    }
-		    else{
-			temp.add(task);
+	}
+	CycleEngine engine = new CycleEngine(this, new BankerPolicy(), state, abortsBanker);
+	metricsBanker = engine.getMetrics();
+	return engine.run(listOfTasks);
+    }//end_Banker_method
+
+    /*
+     * Banker's algorithm run on every component of the tasks on its own (-Dbanker.shardComponents=true)
+     * The tasks of a component only hold, claim and wait for the resource types of the component, and a
+     * state of the whole input is safe iff the state of every component is. So as long as every component
+     * stays safe, a request is safe iff it is safe in its own component, and every component runs through
+     * the same cycles as in the simulation of the whole input, with safety checks over its own tasks.
+     * The running tasks of a component can be in an unsafe state (a task that doesn't run keeps its units
+     * in a check), which blocks every request of the other components: if another component found a
+     * request safe in a cycle in which that may have happened (see ResourceComponents.independent) the
+     * whole input is simulated again in one piece, and so it is if the simulation of a component fails.
+     * Every component is an input of its own, with the tasks renumbered from 1 in the same order and
+     * every resource type (the ones of other components stay available and unclaimed). The components
+     * are simulated at the same time unless -Dbanker.sequential=true. The abort notices of the components
+     * are merged by cycle, and by task number within a cycle
+     *
+     *@param: list of task objects, all running
+     *@param: resource state of the tasks, every unit is available
+     *@param: components of the tasks, more than one
+     *@return: list of the tasks sorted by task number with their total and wait times
+     */
+    private ArrayList<Task> BankerByComponent(ArrayList<Task> listOfTasks, ResourceState state, ResourceComponents components) {
+	final Banker[] parts = new Banker[components.getCount()];
+	ArrayList<ForkJoinTask<ArrayList<Task>>> runs = new ArrayList<ForkJoinTask<ArrayList<Task>>>();
+	for(int c = 0; c < parts.length; c++){
+	    final Banker part = component(components.getTasks(c), state);
+	    parts[c] = part;
+	    runs.add(ForkJoinTask.adapt(new Callable<ArrayList<Task>>(){
+		    public ArrayList<Task> call(){
+			return part.Banker(part.tasksBanker, part.stateBanker);
 		    }
+		}));
+	}
+	boolean failed = false; //a component ran into an error of the input, shown by the simulation of the whole input
+	try{
+	    if(sequential){
+		for(ForkJoinTask<ArrayList<Task>> r : runs){
+		    r.invoke();
 		}
 	    }
-	    
-	    //try to satisfy blocked tasks first
-	    if (!blockedTasks.isEmpty()){
-		//System.out.println("\tFirst check blocked tasks:");
-		    while(j.hasNext()){
-     			Task blocked = j.next();
-			blocked.incrementWait();
-			//System.out.print("\t");
-			taskNum = blocked.getTaskNum();
-			blockedActivity = blocked.getBlockedActivity();
-			activityType = blockedActivity.getName();
-			resourceType = blockedActivity.getResourceType();
-			numOfUnits = blockedActivity.getUnits();
-			avail = resourcesMap.get(resourceType-1);
-			tempRList.clear();
-			for(Integer copy : resourcesMap){
-			    
-			    tempRList.add(copy);
-			}
-			blocked.addAllocatedR(resourceType,numOfUnits);
-			tempRList.set(resourceType-1, avail-numOfUnits);
-		       
-			
-			//temporarily add blocked task to unblockedTasks and check if granting the request is safe
-			unblockedTasks.add(blocked);
-        
-			safe = isSafe(unblockedTasks, tempRList);
-			blocked.removeAllocatedR(resourceType, numOfUnits);
-			unblockedTasks.remove(blocked);
-		       
-			if(safe){
-			    if(activityType.equals("request")) {
-				if(numOfUnits <= avail){//grant request
-				    avail = avail - numOfUnits;
-				    resourcesMap.set(resourceType-1, avail);
-				    blocked.addAllocatedR(resourceType, numOfUnits);
-				    //System.out.print("\tTask "+taskNum+" completes its request ");
-				    //System.out.printf("(resource[%d]: requested = %d, remaining = %d)\n", resourceType, numOfUnits, avail);
-				    j.remove();
-				    temp.add(blocked);
-				}
-				else{
-				    //System.out.println("\tTask "+taskNum+" request still cannot be granted.");
-				}		
-			    }
-			    
-			}
-			else{
-			    //blocked task stays blocked
-			    //System.out.println("Task "+taskNum+ " request cannot be granted (not safe). Task "+taskNum+" is blocked");
-			}
-		    }
+	    else{
+		ForkJoinTask.invokeAll(runs);
 	    }
-	    Iterator<Task> i = unblockedTasks.iterator();
-	    while(i.hasNext()){
-		//System.out.print("\t");
-		Task t = i.next();
-		taskNum = t.getTaskNum();
-      		action = t.getNextActivity();
-	        resourceType = action.getResourceType();
-		numOfUnits = action.getUnits();
-		if(action.getName().equals("compute")){
-		    avail = 0;
-		}
-		else{
-		    avail = resourcesMap.get(resourceType-1); //num of avail units of this resource
-		}
-		tempRList.clear();
-		switch (action.getName()) {
-		case "initiate":
-		    //error check
-		    if(numOfUnits > resourcesMap.get(resourceType-1)){ //claim exceeds resources present: abort
-			abortedMsgs += "Banker aborts ask "+taskNum+" before run begins: \n\tclaim for resource "+resourceType+ " ("+numOfUnits+") exceeds number of units present ("+avail+")\n";
-			t.abort();
-			i.remove();
-			completedTasks.add(t);
-		    }
-		    else{
-			t.setClaim(resourceType, numOfUnits);
-			//System.out.println("Task "+taskNum+ " does initialization");
-		    }
-		    break;
+	}
+	catch(RuntimeException e){
+	    failed = true;
+	}
+	ResourceComponents.Timeline[] timelines = new ResourceComponents.Timeline[parts.length];
+	for(int c = 0; c < parts.length; c++){
+	    timelines[c] = parts[c].timeline;
+	}
+	if(failed || !ResourceComponents.independent(timelines)){
+	    CycleEngine engine = new CycleEngine(this, new BankerPolicy(), state, abortsBanker);
+	    return engine.run(listOfTasks);
+	}
 
-		case "request":
-		    //calculate total units (including what's already allocated) being requested by task
-		    int totalRequests = t.getAllocatedR().get(resourceType-1) + numOfUnits;
-		    if (totalRequests > t.getClaims().get(resourceType-1)){
-			
-			abortedMsgs += "During cycle "+(cycle-1)+"-"+(cycle)+" of Banker's Algorithm: \n\tTask "+taskNum+"'s request exceeds initial claim; aborted\n";
-			//abort and release resources by adding to list of freed resources for this cycle
-		        
-			ArrayList<Integer> toBeReleased = t.getAllocatedR();
-			for (int q=0; q < numOfResources; q++) {
-			    released.set(q, released.get(q)+toBeReleased.get(q));
-			}
-			t.abort(); //abort method zeros allocated resources list for the task
-			completedTasks.add(t);
-			i.remove();
-					     
-		    }
-		    else{
-			for(Integer copy : resourcesMap){
-			   tempRList.add(copy);
-			}
-			t.addAllocatedR(resourceType,numOfUnits);
-			tempRList.set(resourceType-1, avail-numOfUnits);
-			safe = isSafe(unblockedTasks, tempRList);
-			t.removeAllocatedR(resourceType, numOfUnits);
-			if(safe){//safe, grant request
-			    if (numOfUnits <= avail) {
-				avail = avail - numOfUnits;
-				resourcesMap.set(resourceType-1, avail); 
-				t.addAllocatedR(resourceType, numOfUnits);
-				//System.out.print("Task "+taskNum+" completes its request ");
-				//System.out.printf("(resource[%d]: requested = %d, remaining = %d)\n",resourceType,numOfUnits, avail); 
-			    }
-			}
-			else {
-			    blockedTasks.add(t);
-			    i.remove();
-			    t.setBlockedActivity(action);
-			    //System.out.print("Task "+taskNum+" is blocked (unsafe) ");
-			    //System.out.printf("(resource[%d]: requested = %d, available = %d)\n",resourceType,numOfUnits,avail);
-			
-			}
-		    }
-		    break;
-		    
-		case "release":
-		    avail = avail+numOfUnits;
-		    released.set(resourceType-1, released.get(resourceType-1)+numOfUnits);
-		    t.removeAllocatedR(resourceType, numOfUnits);
-		    //System.out.print("Task "+taskNum+" completes its release ");
-		    //System.out.printf("(resource[%d]: released = %d, available next cycle = %d)\n", resourceType, numOfUnits, avail); 
-		    
-		    break;
+	//results and abort notices back in the numbering of the input
+	ArrayList<Task> completed = new ArrayList<Task>(listOfTasks);
+	Collections.sort(completed);
+	ArrayList<ArrayList<AbortNotice>> notices = new ArrayList<ArrayList<AbortNotice>>();
+	for(int c = 0; c < parts.length; c++){
+	    int[] taskNums = components.getTasks(c);
+	    for(Task t : runs.get(c).join()){
+		completed.get(taskNums[t.getTaskNum()-1]-1).setResult(t);
+	    }
+	    ArrayList<AbortNotice> renumbered = new ArrayList<AbortNotice>();
+	    for(AbortNotice a : parts[c].abortsBanker){
+		renumbered.add(new AbortNotice(a.getAlgorithm(), a.getReason(), a.getCycle(), taskNums[a.getTaskNum()-1],
+					       a.getResourceType(), a.getUnits(), a.getLimit()));
+	    }
+	    if(!renumbered.isEmpty()){
+		notices.add(renumbered);
+	    }
+	}
+	mergeAborts(notices, abortsBanker);
+	return completed;
+    }//end_BankerByComponent_method
 
-		case "compute":
-		    int numCycles = resourceType; //this value for "compute" activity corresponds to num-of-cycles
-		    if(numCycles > 1){
-			beingComputed.put(t,numCycles-1); //reduce num of cycles by 1 to account for this current cycle
-		    }
-		    else if (numCycles==1) {
-			temp.add(t);
-		    }
-		    i.remove();
-		    //System.out.println("Task "+taskNum+" delayed "+numCycles+".");
-		    break;
-		}//end_switch
-	    
-		if(t.terminate()){
-		    if(beingComputed.containsKey(t)){
-			continue;
+    /*
+     *Input of one component: its tasks renumbered from 1 with their activities, and every resource type
+     *@param: taskNums: tasks of the component in increasing order
+     *@param: state: resource state of the whole input, every unit is available
+     */
+    private Banker component(int[] taskNums, ResourceState state){
+	Banker part = new Banker(out);
+	part.timeline = new ResourceComponents.Timeline();
+	part.numOfTasks = taskNums.length;
+	part.numOfResources = numOfResources;
+	part.stateBanker = new ResourceState(taskNums.length, numOfResources);
+	for(int r = 1; r <= numOfResources; r++){
+	    part.stateBanker.setAvailable(r, state.getAvailable(r));
+	}
+	for(int k = 0; k < taskNums.length; k++){
+	    for(int a = activities.getStart(taskNums[k]); a < activities.getEnd(taskNums[k]); a++){
+		part.activities.add(k+1, activities.getOpcode(a), activities.getResourceType(a), activities.getUnits(a));
+	    }
+	    part.tasksBanker.add(part.new Task(k+1, part.stateBanker));
+	}
+	part.activities.finish();
+	for(Task t : part.tasksBanker){
+	    t.setActivities(part.activities);
+	}
+	return part;
+    }
+
+    /*
+     *Merges lists of abort notices ordered by cycle into one, notices of the same cycle by task number
+     *@param: lists: notices of every component, in the order they were aborted
+     *@param: merged: list the notices are added to
+     */
+    private static void mergeAborts(final ArrayList<ArrayList<AbortNotice>> lists, ArrayList<AbortNotice> merged){
+	final int[] next = new int[lists.size()]; //first notice of every list not merged yet
+	PriorityQueue<Integer> heads = new PriorityQueue<Integer>(Math.max(1, lists.size()), new Comparator<Integer>(){
+		public int compare(Integer x, Integer y){
+		    AbortNotice a = lists.get(x).get(next[x]);
+		    AbortNotice b = lists.get(y).get(next[y]);
+		    if(a.getCycle() != b.getCycle()){
+			return Integer.compare(a.getCycle(), b.getCycle());
 		    }
-		    //System.out.println("\tTask "+taskNum+" terminates at cycle "+cycle);
-		    t.setTotalTime(cycle);
-			if(unblockedTasks.contains(t)){
-			    completedTasks.add(t);
-			    terminatedTasks.add(t);
-			}
-			else if (temp.contains(t)){ //computed for 1 cycle and terminate
-			    temp.remove(t);
-			    completedTasks.add(t);
-			}
-		   		
+		    return Integer.compare(a.getTaskNum(), b.getTaskNum());
 		}
-		
+	    });
+	for(int k = 0; k < lists.size(); k++){
+	    heads.add(k);
+	}
+	while(!heads.isEmpty()){
+	    int k = heads.poll();
+	    merged.add(lists.get(k).get(next[k]++));
+	    if(next[k] < lists.get(k).size()){
+		heads.add(k);
 	    }
-	    //update available resources from tasks that released for the next
-	    for (int r=0; r<numOfResources; r++){
-		int newVal = resourcesMap.get(r) + released.get(r);
-		resourcesMap.set(r, newVal);
-	    }
-	  
-	    
-	    for(Task p : temp){
-		unblockedTasks.add(p);
+	}
+    }
+
+    /* resource types used by every task of the input (see TaskAnalysis), found the first time they are asked for */
+    TaskAnalysis getAnalysis(){
+	if(analysis == null){
+	    analysis = new TaskAnalysis(activities, numOfTasks, numOfResources);
+	}
+	return analysis;
+    }
+
+    /* trace of a simulation of this input by an allocation policy, null if tracing is off or the file can't be created */
+    EventTracer openTracer(String policyName){
+	if(!trace || inputName == null){
+	    return null;
+	}
+	//FIFO and Banker are numbered as in EventTracer.ALGORITHM_NAMES, other policies show as "?"
+	byte algorithm = (byte)Arrays.asList(EventTracer.ALGORITHM_NAMES).indexOf(policyName);
+	try{
+	    return new EventTracer(inputName + "." + policyName + ".trace", algorithm, numOfTasks, numOfResources, traceBuffer);
+	}
+	catch(IOException e){
+	    out.println("Error writing trace: " + e.getMessage());
+	    return null;
+	}
+    }
+    void closeTracer(EventTracer tracer){
+	if(tracer == null){
+	    return;
+	}
+	try{
+	    tracer.close();
+	}
+	catch(IOException e){
+	    out.println("Error writing trace: " + e.getMessage());
+	}
+    }
+
+    /*
+     *Reads the input file, runs both simulations and prints the results
+     *The FIFO simulation is forked to the fork/join pool (the batch pool, or the common pool for a single
+     *input) while the Banker simulation runs in this thread. Each one only touches its own tasks and
+     *resource state; the activity store is read-only. The report is written after both finished
+     *@param: name of file
+     */
+    public void run(String filename){
+	Report report = Report.forFormat(reportFormat);
+	if(report == null){
+	    out.println("Error: unknown report format " + reportFormat);
+	    return;
+	}
+	if(!readInputFile(filename)){
+	    return;
+	}
+
+	ArrayList<Task> completedTasksFIFO;
+	ArrayList<Task> completedTasksBanker;
+	if(sequential){
+	    completedTasksFIFO = FIFO(tasksFIFO, stateFIFO);    
+	    completedTasksBanker = Banker(tasksBanker, stateBanker);
+	}
+	else{
+	    ForkJoinTask<ArrayList<Task>> fifo = ForkJoinTask.adapt(new Callable<ArrayList<Task>>(){
+		    public ArrayList<Task> call(){
+			return FIFO(tasksFIFO, stateFIFO);
+		    }
+		}).fork();
+	    completedTasksBanker = Banker(tasksBanker, stateBanker);
+	    completedTasksFIFO = fifo.join();
+	}
+	PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out), 1 << 16));
+	ArrayList<AbortNotice> aborts = new ArrayList<AbortNotice>(abortsFIFO);
+	aborts.addAll(abortsBanker);
+	report.write(writer, filename, completedTasksFIFO, completedTasksBanker, aborts);
+	writer.flush(); //out stays open
+	if(metricsFormat != null && metricsFIFO != null && metricsBanker != null){
+	    writeMetrics(filename);
+	}
+    }//end_run_method
+
+    /*
+     *Writes the metrics of both simulations to inputFileName.metrics.json (or .csv)
+     *@param: name of the input file
+     */
+    private void writeMetrics(String filename){
+	boolean csv = metricsFormat.equalsIgnoreCase("csv");
+	String metricsFile = filename + (csv ? ".metrics.csv" : ".metrics.json");
+	try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(metricsFile)))) {
+	    if(csv){
+		SimulationMetrics.writeCsv(writer, metricsFIFO, metricsBanker);
 	    }
-	    temp.clear();
-	    
-	    if(completedTasks.size()==numOfTasks){
-		keepGoing=false;
+	    else{
+		SimulationMetrics.writeJson(writer, filename, metricsFIFO, metricsBanker);
 	    }
-	    
-	}//end_while
-	Collections.sort(completedTasks);
-	return completedTasks;
-    }//end_Banker_method
+	}
+	catch (IOException e){
+	    out.println("Error writing metrics: " + e.getMessage());
+	}
+    }
 
-    public static void main(String[] args) {
-	Banker b = new Banker();
-	if (args.length > 0){
-	    b.readInputFile(args[0]);
-	 
-	    ArrayList<Task> completedTasksFIFO = b.FIFO(tasksFIFO, resourcesFIFO);    
-	    ArrayList<Task> completedTasksBanker = b.Banker(tasksBanker, resourcesBanker);
-	    System.out.println(abortedMsgs);
-	    System.out.format("\t\t%s","  FIFO");
-	    System.out.format("\t\t\t\t\t%s","BANKER'S");
-	    System.out.println();
-	    int ttFIFO=0; int twFIFO=0; int ttBanker=0; int twBanker = 0; //total times and total wait times
-	    for (int i = 0; i<numOfTasks; i++){
-		Task taskFIFO = completedTasksFIFO.get(i);
-		Task taskBanker = completedTasksBanker.get(i);
-		if(taskFIFO.isAborted()){
-		    System.out.printf("\t%-6s      %-14s", ("Task "+Integer.toString(i+1)), "aborted");
-		}
-		else{
-		    String str = "Task " + Integer.toString(i+1);
-		    float wait = 100*((float)taskFIFO.getWaitTime()/(float)taskFIFO.getTotalTime());
-		    System.out.printf("\t%-6s      %-3d   %-3d   %.0f%s",str, taskFIFO.getTotalTime(), taskFIFO.getWaitTime(),wait,"%"); 
-		    ttFIFO += taskFIFO.getTotalTime();
-		    twFIFO += taskFIFO.getWaitTime();
-		}
-		if(taskBanker.isAborted()){
-		    System.out.printf("\t\t%-6s      %-14s",("Task "+Integer.toString(i+1)), "aborted");
-		    System.out.println();
-		}
-		else{
-		    float wait = 100*((float)taskBanker.getWaitTime()/(float)taskBanker.getTotalTime());
-		    System.out.printf("\t\t%-6s      %-3d   %-3d   %.0f%s",("Task "+Integer.toString(i+1)), taskBanker.getTotalTime(), taskBanker.getWaitTime(), wait, "%");
-		    ttBanker += taskBanker.getTotalTime();
-		    twBanker += taskBanker.getWaitTime();
-		    System.out.println();
+    /*
+     *Runs every input of the batch, at most threads inputs at the same time. The output of every
+     *input is collected separately and printed in input order, after a line with the name of the input
+     *@param: directories (every file in them), globs (e.g. inputs/*.txt) or files, in input order
+     */
+    public static void runBatch(String[] patterns) throws IOException, InterruptedException {
+	ArrayList<String> inputs = new ArrayList<String>();
+	for(String pattern : patterns){
+	    ArrayList<String> files = batchInputs(pattern);
+	    if(files.isEmpty()){
+		System.out.println("Error: no input file matches " + pattern);
+	    }
+	    inputs.addAll(files);
+	}
+	ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+	try{
+	    //only a few inputs ahead of the one being printed are kept in memory
+	    ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>();
+	    ArrayDeque<String> names = new ArrayDeque<String>();
+	    for(final String input : inputs){
+		if(pending.size() == 4*pool.getParallelism()){
+		    printBatchOutput(names.poll(), pending.poll());
 		}
+		names.add(input);
+		pending.add(pool.submit(new Callable<String>(){
+			public String call(){
+			    return simulate(input);
+			}
+		    }));
 	    }
-	    float twpFIFO = 100*((float)twFIFO/(float)ttFIFO);
-	    System.out.printf("\t%-6s      %-3d   %-3d   %.0f%s", "Total", ttFIFO, twFIFO, twpFIFO, "%");
+	    while(!pending.isEmpty()){
+		printBatchOutput(names.poll(), pending.poll());
+	    }
+	}
+	finally{
+	    pool.shutdown();
+	}
+    }//end_runBatch_method
 
-	    float twpBanker = 100*((float)twBanker/(float)ttBanker);
-	    System.out.printf("\t\t%-6s      %-3d   %-3d   %.0f%s", "Total", ttBanker, twBanker, twpBanker, "%");
+    /* runs one input of the batch and returns what it prints, an error stops only this input */
+    private static String simulate(String filename){
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	PrintStream out = new PrintStream(buffer);
+	try{
+	    new Banker(out).run(filename);
+	}
+	catch(RuntimeException e){
+	    out.println("Error: " + e);
+	}
+	out.flush();
+	return buffer.toString();
+    }
 
-	    System.out.println();
-	
+    private static void printBatchOutput(String filename, Future<String> output) throws InterruptedException {
+	System.out.println("==> " + filename + " <==");
+	try{
+	    System.out.print(output.get());
+	}
+	catch(ExecutionException e){
+	    System.out.println("Error: " + e.getCause());
+	}
+    }
+
+    /* files of the batch given by a directory, a glob (in the last part of the path) or a file name, sorted by name */
+    static ArrayList<String> batchInputs(String pattern) throws IOException {
+	ArrayList<String> files = new ArrayList<String>();
+	Path path = Paths.get(pattern);
+	if(Files.isRegularFile(path)){
+	    files.add(pattern);
+	    return files;
+	}
+	Path dir = path;
+	String glob = "*";
+	if(!Files.isDirectory(path)){
+	    dir = (path.getParent() == null) ? Paths.get(".") : path.getParent();
+	    glob = path.getFileName().toString();
+	}
+	try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)) {
+	    for(Path file : stream){
+		if(Files.isRegularFile(file)){
+		    files.add(file.toString());
+		}
+	    }
+	}
+	Collections.sort(files);
+	return files;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+	if (args.length > 1 && args[0].equals("-batch")){
+	    String[] patterns = new String[args.length-1];
+	    System.arraycopy(args, 1, patterns, 0, patterns.length);
+	    runBatch(patterns);
+	}
+	else if (args.length > 0){
+	    new Banker().run(args[0]);
 	}
 	else {
 	    System.out.println("Error: No commandline argument detected");
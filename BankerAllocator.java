@@ -0,0 +1,448 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Description: The Banker's algorithm as a resource allocator for concurrent programs.
+ * A task declares its claims, then acquires units (waiting until granting them keeps the state
+ * safe) and releases them; finish releases everything it still holds and ends its claims. Unlike
+ * the simulation, a task waiting for units still takes part in the safety checks: it holds its
+ * units and may still ask for the rest of its claim.
+ *
+ * Every change of the state is made by one admission thread, which owns a ResourceState and a
+ * SafetyChecker. Callers put their operations on a lock-free queue and wake it up; it takes every
+ * operation queued since it last ran, then grants the waiting requests that are safe, the oldest
+ * first. Waiting requests are only checked again after units came back (a release or a task
+ * finishing), requests that just arrived are checked at once. The state is always safe, so a task
+ * whose whole need is available can finish first whatever it gets: its requests are granted
+ * without a safety check. Otherwise, granting u units of resource r only takes u units out of the
+ * work of the other tasks until the task finishes, and the task itself finishes as soon as its
+ * need fits the work it would have without the grant. So the request is safe exactly when the
+ * task's need fits the units the other tasks end up with starting from the available units less
+ * u of r, plus those u. That end vector is the same for every request of u units of r: it is
+ * found with one search (SafetyChecker.finishFrom) and kept until the state changes, so a pass
+ * costs one search per distinct request size instead of one per waiting request. The available units and the units
+ * held by every task are published in atomic arrays, so they are read without the admission thread.
+ *
+ * acquireAsync returns a CompletableFuture completed by the admission thread, so stages chained
+ * to it without an executor (thenRun instead of thenRunAsync) run on that thread and hold up the
+ * other callers. A task's own calls are expected one after the other, e.g. from the thread or
+ * virtual thread serving it; different tasks can call at the same time.
+ *
+ * Task ids go from 1 to the number of tasks given to the constructor, resource types from 1 to
+ * the number of resource types, like in the simulation's input. See AllocatorBenchmark.
+ */
+public class BankerAllocator implements AutoCloseable {
+    private static final byte CLAIM = 0;
+    private static final byte ACQUIRE = 1;
+    private static final byte RELEASE = 2;
+    private static final byte FINISH = 3;
+
+    private final int numOfTasks;
+    private final int numOfResources;
+    private final int[] unitsPresent; //indexed from 0
+
+    /* owned by the admission thread */
+    private final ResourceState state;
+    private final SafetyChecker checker;
+    private final ArrayList<Operation> waiting = new ArrayList<Operation>(); //requests not granted yet, oldest first
+    private boolean unitsBack = false; //units came back since the waiting requests were last checked
+    /* units the tasks end up with starting from the available units less u of r, by (r-1)*(largest units present+1) + u
+     * (a long, unit counts can go up to Integer.MAX_VALUE), for the current state */
+    private final HashMap<Long,int[]> finishedWith = new HashMap<Long,int[]>();
+    private final int maxUnits;
+
+    /* shared with the callers */
+    private final ConcurrentLinkedQueue<Operation> inbox = new ConcurrentLinkedQueue<Operation>();
+    private final AtomicIntegerArray held; //held[(t-1)*numOfResources + (r-1)], what the callers were granted and haven't released
+    private final AtomicIntegerArray finishing; //finishing[t-1], finish calls of task t not handled by the admission thread yet
+    private final AtomicIntegerArray available; //published after every pass of the admission thread
+    private final Thread admission;
+    private volatile boolean closed = false;
+
+    /* one call of a caller, handled by the admission thread */
+    private static class Operation {
+	final byte type;
+	final int taskNum;
+	final int resourceType;
+	final int units;
+	final int[] claims; //CLAIM only, indexed from 0
+	final CompletableFuture<Void> done; //ACQUIRE only
+
+	Operation(byte type, int taskNum, int resourceType, int units, int[] claims, CompletableFuture<Void> done){
+	    this.type = type;
+	    this.taskNum = taskNum;
+	    this.resourceType = resourceType;
+	    this.units = units;
+	    this.claims = claims;
+	    this.done = done;
+	}
+    }
+
+    /*
+     *Class constructor, starts the admission thread
+     *@param: units: units present of every resource type (units[0] is resource type 1)
+     *@param: tasks: largest task id
+     */
+    public BankerAllocator(int[] units, int tasks){
+	if(tasks < 1 || units.length < 1){
+	    throw new IllegalArgumentException("An allocator needs at least one task and one resource type");
+	}
+	this.numOfTasks = tasks;
+	this.numOfResources = units.length;
+	this.unitsPresent = units.clone();
+	this.state = new ResourceState(tasks, numOfResources);
+	this.available = new AtomicIntegerArray(numOfResources);
+	for(int r = 0; r < numOfResources; r++){
+	    if(units[r] < 0){
+		throw new IllegalArgumentException("Resource " + (r+1) + " has " + units[r] + " units");
+	    }
+	    state.setAvailable(r+1, units[r]);
+	    available.set(r, units[r]);
+	}
+	this.checker = new SafetyChecker(state);
+	this.held = new AtomicIntegerArray(tasks*numOfResources);
+	this.finishing = new AtomicIntegerArray(tasks);
+	int maxUnits = 0;
+	for(int u : units){
+	    maxUnits = Math.max(maxUnits, u);
+	}
+	this.maxUnits = maxUnits;
+	this.admission = new Thread(new Runnable(){
+		public void run(){
+		    try{
+			admit();
+		    }
+		    catch(RuntimeException e){ //e.g. a wrong answer found with -Dbanker.validateSafety: nothing can be granted any more
+			closed = true;
+			failWaiting(e);
+			throw e;
+		    }
+		}
+	    }, "banker-admission");
+	admission.setDaemon(true);
+	admission.start();
+    }
+
+    /*
+     *Declares the claims of a task that holds nothing (a new task, or one that finished)
+     *@param: taskId: task
+     *@param: claims: units of every resource type the task may hold at the same time
+     */
+    public void declareClaims(int taskId, int[] claims){
+	checkTask(taskId);
+	if(claims.length != numOfResources){
+	    throw new IllegalArgumentException("Task " + taskId + " declares " + claims.length + " claims for " + numOfResources + " resource types");
+	}
+	for(int r = 0; r < numOfResources; r++){
+	    if(claims[r] < 0 || claims[r] > unitsPresent[r]){
+		throw new IllegalArgumentException("Task " + taskId + "'s claim for resource " + (r+1) + " (" + claims[r]
+						   + ") exceeds number of units present (" + unitsPresent[r] + ")");
+	    }
+	    if(finishing.get(taskId-1) == 0 && held.get((taskId-1)*numOfResources + r) != 0){ //a finish gives everything back
+		throw new IllegalStateException("Task " + taskId + " declares claims while holding units of resource " + (r+1));
+	    }
+	}
+	submit(new Operation(CLAIM, taskId, 0, 0, claims.clone(), null));
+    }
+
+    /*
+     *Requests units, the future completes when they are granted. It completes exceptionally with an
+     *IllegalArgumentException if the request exceeds the task's claim, with an IllegalStateException if
+     *the task has no claims or finishes first. Cancelling it withdraws the request if it wasn't granted
+     *@param: taskId: task
+     *@param: resourceType: requested resource type
+     *@param: units: number of requested units
+     */
+    public CompletableFuture<Void> acquireAsync(int taskId, int resourceType, int units){
+	checkTask(taskId);
+	checkResource(resourceType);
+	if(units < 0){
+	    throw new IllegalArgumentException("Task " + taskId + " requests " + units + " units");
+	}
+	CompletableFuture<Void> done = new CompletableFuture<Void>();
+	submit(new Operation(ACQUIRE, taskId, resourceType, units, null, done));
+	return done;
+    }
+
+    /*
+     *Requests units and waits until they are granted
+     *@param: taskId, resourceType, units: see acquireAsync
+     */
+    public void acquire(int taskId, int resourceType, int units) throws InterruptedException {
+	CompletableFuture<Void> done = acquireAsync(taskId, resourceType, units);
+	try{
+	    done.get();
+	}
+	catch(InterruptedException e){
+	    if(done.cancel(false)){ //withdrawn before it was granted
+		throw e;
+	    }
+	    Thread.currentThread().interrupt(); //decided anyway, the caller sees the interrupt later
+	    rethrow(done);
+	}
+	catch(ExecutionException e){
+	    rethrow(done);
+	}
+    }
+
+    /* throws the exception the future completed with */
+    private static void rethrow(CompletableFuture<Void> done){
+	try{
+	    done.join();
+	}
+	catch(CompletionException e){
+	    Throwable cause = e.getCause();
+	    if(cause instanceof RuntimeException){
+		throw (RuntimeException)cause;
+	    }
+	    throw new IllegalStateException(cause);
+	}
+    }
+
+    /*
+     *Gives units back, they can be granted to waiting requests right away
+     *@param: taskId: task
+     *@param: resourceType: released resource type
+     *@param: units: number of released units, at most what the task holds
+     */
+    public void release(int taskId, int resourceType, int units){
+	checkTask(taskId);
+	checkResource(resourceType);
+	int index = (taskId-1)*numOfResources + resourceType-1;
+	while(true){
+	    int units0 = held.get(index);
+	    if(units < 0 || units > units0){
+		throw new IllegalArgumentException("Task " + taskId + " releases " + units + " units of resource " + resourceType + " but holds " + units0);
+	    }
+	    if(held.compareAndSet(index, units0, units0 - units)){
+		break;
+	    }
+	}
+	submit(new Operation(RELEASE, taskId, resourceType, units, null, null));
+    }
+
+    /*
+     *Releases every unit the task holds and ends its claims; its requests still waiting fail. The units
+     *are given back (and getHeld drops to 0) when the admission thread gets to it
+     *@param: taskId: task
+     */
+    public void finish(int taskId){
+	checkTask(taskId);
+	finishing.incrementAndGet(taskId-1);
+	try{
+	    submit(new Operation(FINISH, taskId, 0, 0, null, null));
+	}
+	catch(IllegalStateException e){
+	    finishing.decrementAndGet(taskId-1);
+	    throw e;
+	}
+    }
+
+    /* getters: units not held by any task (as of the last pass of the admission thread), units a task holds */
+    public int getAvailable(int resourceType){
+	checkResource(resourceType);
+	return available.get(resourceType-1);
+    }
+    public int getHeld(int taskId, int resourceType){
+	checkTask(taskId);
+	checkResource(resourceType);
+	return held.get((taskId-1)*numOfResources + resourceType-1);
+    }
+    public int getNumOfTasks(){
+	return this.numOfTasks;
+    }
+    public int getNumOfResources(){
+	return this.numOfResources;
+    }
+
+    /* handles the operations queued so far, then stops the admission thread; requests still waiting fail */
+    public void close(){
+	closed = true;
+	LockSupport.unpark(admission);
+	boolean interrupted = false;
+	while(admission.isAlive()){
+	    try{
+		admission.join();
+	    }
+	    catch(InterruptedException e){
+		interrupted = true;
+	    }
+	}
+	if(interrupted){
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    private void submit(Operation op){
+	if(closed){
+	    throw new IllegalStateException("Allocator is closed");
+	}
+	inbox.add(op);
+	if(closed && inbox.remove(op)){ //the admission thread may have stopped before it was queued, nothing would take it
+	    throw new IllegalStateException("Allocator is closed");
+	}
+	LockSupport.unpark(admission);
+    }
+
+    private void checkTask(int taskId){
+	if(taskId < 1 || taskId > numOfTasks){
+	    throw new IllegalArgumentException("Task " + taskId + " is not between 1 and " + numOfTasks);
+	}
+    }
+    private void checkResource(int resourceType){
+	if(resourceType < 1 || resourceType > numOfResources){
+	    throw new IllegalArgumentException("Resource " + resourceType + " is not between 1 and " + numOfResources);
+	}
+    }
+
+    /* admission thread: takes every queued operation, then grants what it can */
+    private void admit(){
+	while(true){
+	    int arrived = waiting.size(); //requests before this index were checked since units last came back
+	    Operation op;
+	    while((op = inbox.poll()) != null){
+		switch(op.type){
+		case CLAIM:
+		    for(int r = 1; r <= numOfResources; r++){
+			state.setClaim(op.taskNum, r, op.claims[r-1]);
+			checker.updateNeed(op.taskNum, r);
+		    }
+		    checker.activate(op.taskNum);
+		    break;
+		case ACQUIRE:
+		    if(!checker.isActive(op.taskNum)){
+			op.done.completeExceptionally(new IllegalStateException("Task " + op.taskNum + " has no claims"));
+		    }
+		    else if(state.getAllocated(op.taskNum, op.resourceType) + op.units > state.getClaim(op.taskNum, op.resourceType)){
+			op.done.completeExceptionally(new IllegalArgumentException("Task " + op.taskNum + "'s request of " + op.units + " units of resource "
+										   + op.resourceType + " exceeds its claim (" + state.getClaim(op.taskNum, op.resourceType) + ")"));
+		    }
+		    else{
+			waiting.add(op);
+		    }
+		    break;
+		case RELEASE:
+		    state.deallocate(op.taskNum, op.resourceType, op.units);
+		    checker.updateNeed(op.taskNum, op.resourceType);
+		    unitsBack = true;
+		    break;
+		case FINISH:
+		    for(int r = 1; r <= numOfResources; r++){
+			state.deallocate(op.taskNum, r, state.getAllocated(op.taskNum, r));
+			state.setClaim(op.taskNum, r, 0);
+			held.set((op.taskNum-1)*numOfResources + r-1, 0);
+		    }
+		    checker.retire(op.taskNum);
+		    finishing.decrementAndGet(op.taskNum-1);
+		    for(Operation w : waiting){
+			if(w.taskNum == op.taskNum){
+			    w.done.completeExceptionally(new IllegalStateException("Task " + op.taskNum + " finished while waiting"));
+			}
+		    }
+		    unitsBack = true;
+		    break;
+		}
+	    }
+	    boolean rescan = unitsBack;
+	    unitsBack = false;
+	    grantWaiting(rescan ? 0 : arrived);
+	    for(int r = 0; r < numOfResources; r++){
+		available.lazySet(r, state.getAvailable(r+1));
+	    }
+	    if(inbox.isEmpty() && !unitsBack){
+		if(closed){
+		    break;
+		}
+		LockSupport.park(this);
+	    }
+	}
+	failWaiting(new CancellationException("Allocator closed"));
+    }
+
+    /* completes every request not granted yet with the exception */
+    private void failWaiting(Throwable e){
+	Operation op;
+	while((op = inbox.poll()) != null){
+	    if(op.type == ACQUIRE){
+		waiting.add(op);
+	    }
+	}
+	for(Operation w : waiting){
+	    w.done.completeExceptionally(e);
+	}
+	waiting.clear();
+    }
+
+    /* true if the available units cover the task's need of every resource */
+    private boolean canFinish(int taskNum){
+	for(int r = 1; r <= numOfResources; r++){
+	    if(state.getNeed(taskNum, r) > state.getAvailable(r)){
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /* true if granting units of resourceType to the task keeps the state safe */
+    private boolean isSafeAfter(int taskNum, int resourceType, int units){
+	Long key = (long)(resourceType-1)*((long)maxUnits+1) + units;
+	int[] end = finishedWith.get(key);
+	if(end == null){
+	    end = new int[numOfResources];
+	    for(int r = 0; r < numOfResources; r++){
+		end[r] = state.getAvailable(r+1);
+	    }
+	    end[resourceType-1] -= units;
+	    checker.finishFrom(end);
+	    end[resourceType-1] += units;
+	    finishedWith.put(key, end);
+	}
+	boolean safe = true;
+	for(int r = 0; r < numOfResources && safe; r++){
+	    safe = state.getNeed(taskNum, r+1) <= end[r];
+	}
+	if(Banker.validateSafety && safe != checker.isSafeAfter(taskNum, resourceType, units)){
+	    throw new IllegalStateException("Allocator disagrees with the safety checker for Task " + taskNum + " requesting " + units + " of resource " + resourceType);
+	}
+	return safe;
+    }
+
+    /* grants the waiting requests from index from on that are safe, the oldest first, and drops the decided ones */
+    private void grantWaiting(int from){
+	int kept = from;
+	finishedWith.clear(); //operations changed the state since the last pass
+	for(int k = from; k < waiting.size(); k++){
+	    Operation op = waiting.get(k);
+	    if(op.done.isDone()){ //cancelled, or failed because its task finished
+		continue;
+	    }
+	    int t = op.taskNum;
+	    int r = op.resourceType;
+	    if(op.units <= state.getAvailable(r) && (canFinish(t) || isSafeAfter(t, r, op.units))){
+		state.allocate(t, r, op.units);
+		checker.updateNeed(t, r);
+		finishedWith.clear();
+		int index = (t-1)*numOfResources + r-1;
+		held.addAndGet(index, op.units);
+		if(!op.done.complete(null)){ //cancelled in the meantime, the requests before it are checked again
+		    held.addAndGet(index, -op.units);
+		    state.deallocate(t, r, op.units);
+		    checker.updateNeed(t, r);
+		    unitsBack = true;
+		}
+		continue;
+	    }
+	    waiting.set(kept++, op);
+	}
+	while(waiting.size() > kept){
+	    waiting.remove(waiting.size()-1);
+	}
+    }
+}//end_BankerAllocator_class
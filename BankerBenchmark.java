@@ -0,0 +1,368 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Description: Benchmarks for the FIFO and Banker simulations and for the safety check
+ * over generated workloads (see WorkloadGenerator).
+ *
+ * Every benchmark is warmed up and then run repeatedly for a fixed time. Reading the input
+ * is not timed. For each benchmark and input size it reports simulations (or safety checks)
+ * per second, time per operation, time per simulated cycle (also divided by the number of
+ * tasks, which stays flat while the cycle loop scales linearly), allocation rate and bytes
+ * allocated per operation. With -csv the rows are also written to a file so results can be
+ * compared from one release to the next.
+ *
+ * Usage: java BankerBenchmark [-sizes 10,100,1000,10000] [-resources 8] [-skew 2]
+ *        [-compute 5] [-contention 0.5] [-seed 1] [-warmup 1] [-time 3]
+ *        [-bench fifo,banker,safety,parallel,vector,hint] [-csv results.csv]
+ *
+ * The parallel benchmark compares the sequential and the parallel safety check (which uses the
+ * common fork/join pool) on the same states; the size where SafetyPar gets ahead of SafetySeq is
+ * the value to use for -Dbanker.parallelSafetyThreshold. The vector benchmark times the row compare
+ * and add of the scalar RowKernel and, when it can be loaded, the SIMD one (run it with
+ * --add-modules jdk.incubator.vector and different -resources). The hint benchmark runs the Banker
+ * simulation with safety checks that always search and with the safe sequence hint (give it a high
+ * -contention, where most requests are checked more than once).
+ */
+public class BankerBenchmark {
+    private static int[] sizes = {10, 100, 1000, 10000}; //pass -sizes to go up to 100000 tasks
+    private static int resources = 8;
+    private static double skew = 2.0;
+    private static int compute = 5;
+    private static double contention = 0.5;
+    private static long seed = 1;
+    private static double warmupSeconds = 1;
+    private static double measureSeconds = 3;
+    private static String benchmarks = "fifo,banker,safety";
+    private static String csvFile = null;
+    //the reference isSafe is quadratic, it is skipped above this number of tasks
+    private static final int MAX_REFERENCE_TASKS = 10000;
+
+    /*
+     * Result of one benchmark at one input size
+     */
+    private static class Result {
+	String name;
+	int tasks;
+	long iterations;
+	long nanos;
+	long bytes;
+	long cycles;
+
+	Result(String name, int tasks){
+	    this.name = name;
+	    this.tasks = tasks;
+	}
+	double opsPerSecond(){
+	    return iterations / (nanos / 1e9);
+	}
+	double nanosPerOp(){
+	    return (double)nanos / iterations;
+	}
+	double nanosPerCycle(){
+	    return cycles == 0 ? 0 : (double)nanos / cycles;
+	}
+	double nanosPerCycleTask(){
+	    return nanosPerCycle() / tasks;
+	}
+	double allocMBPerSecond(){
+	    return bytes < 0 ? -1 : (bytes / 1048576.0) / (nanos / 1e9);
+	}
+	double allocBytesPerOp(){
+	    return bytes < 0 ? -1 : (double)bytes / iterations;
+	}
+    }
+
+    /*
+     * One timed operation, returns the number of simulated cycles (0 if it doesn't simulate)
+     */
+    private interface Operation {
+	void setUp();
+	long run();
+    }
+
+    public static void main(String[] args) throws IOException {
+	parseArgs(args);
+	ArrayList<Result> results = new ArrayList<Result>();
+	System.out.printf("%-14s %8s %10s %14s %14s %12s %12s %12s %14s%n", "Benchmark", "Tasks", "Iter", "ops/s", "ns/op", "ns/cycle",
+			  "ns/cyc/task", "MB/s", "B/op");
+	for(int size : sizes){
+	    File input = File.createTempFile("banker-bench", ".txt");
+	    input.deleteOnExit();
+	    new WorkloadGenerator(size, resources, skew, compute, contention, seed).write(input);
+	    final String filename = input.getPath();
+	    if(benchmarks.contains("fifo")){
+		results.add(print(measure("FIFO", size, new Operation(){
+			Banker b;
+			public void setUp(){
+			    b = load(filename);
+			}
+			public long run(){
+			    return cycles(b.FIFO(b.tasksFIFO, b.stateFIFO));
+			}
+		    })));
+	    }
+	    if(benchmarks.contains("banker")){
+		results.add(print(measure("Banker", size, new Operation(){
+			Banker b;
+			public void setUp(){
+			    b = load(filename);
+			}
+			public long run(){
+			    return cycles(b.Banker(b.tasksBanker, b.stateBanker));
+			}
+		    })));
+	    }
+	    if(benchmarks.contains("hint")){
+		boolean hint = SafetyChecker.safeSequenceHint;
+		for(final boolean useHint : new boolean[]{false, true}){
+		    SafetyChecker.safeSequenceHint = useHint;
+		    results.add(print(measure(useHint ? "Banker-hint" : "Banker-search", size, new Operation(){
+			    Banker b;
+			    public void setUp(){
+				b = load(filename);
+			    }
+			    public long run(){
+				return cycles(b.Banker(b.tasksBanker, b.stateBanker));
+			    }
+			})));
+		}
+		SafetyChecker.safeSequenceHint = hint;
+	    }
+	    if(benchmarks.contains("safety")){
+		final Banker b = new Banker();
+		final ResourceState state = new ResourceState(size, resources);
+		final ArrayList<Banker.Task> tasks = randomState(b, state);
+		final SafetyChecker checker = new SafetyChecker(state);
+		for(int t = 1; t <= size; t++){
+		    checker.activate(t);
+		}
+		if(size <= MAX_REFERENCE_TASKS){
+		    results.add(print(measure("isSafe", size, new Operation(){
+			    public void setUp(){
+			    }
+			    public long run(){
+				b.isSafe(tasks, state.copyAvailable());
+				return 0;
+			    }
+			})));
+		}
+		results.add(print(measure("SafetyChecker", size, new Operation(){
+			public void setUp(){
+			}
+			public long run(){
+			    checker.isSafeAfter(1, 1, 0);
+			    return 0;
+			}
+		    })));
+	    }
+	    if(benchmarks.contains("parallel")){
+		//sequential and parallel safety check on the same state, to find the crossover point
+		final ResourceState state = new ResourceState(size, resources);
+		randomState(new Banker(), state);
+		final SafetyChecker checker = new SafetyChecker(state);
+		for(int t = 1; t <= size; t++){
+		    checker.activate(t);
+		}
+		if(checker.isSafeSequential() != checker.isSafeParallel()){
+		    throw new IllegalStateException("Parallel safety check disagrees with the sequential one");
+		}
+		results.add(print(measure("SafetySeq", size, new Operation(){
+			public void setUp(){
+			}
+			public long run(){
+			    checker.isSafeSequential();
+			    return 0;
+			}
+		    })));
+		results.add(print(measure("SafetyPar", size, new Operation(){
+			public void setUp(){
+			}
+			public long run(){
+			    checker.isSafeParallel();
+			    return 0;
+			}
+		    })));
+	    }
+	    if(benchmarks.contains("vector")){
+		//row compare and add over size x resources need and allocation matrices, scalar and loaded kernel
+		final int[] need = new int[size*resources];
+		final int[] work = new int[resources];
+		Random rnd = new Random(seed);
+		for(int k = 0; k < need.length; k++){
+		    need[k] = rnd.nextInt(10);
+		}
+		java.util.Arrays.fill(work, 10); //every row fits, so every row is compared in full
+		RowKernel[] kernels = {new RowKernel(), RowKernel.get()};
+		for(final RowKernel kernel : kernels){
+		    if(kernel != kernels[0] && kernel.getClass() == RowKernel.class){
+			break; //vector kernel not available
+		    }
+		    results.add(print(measure("Row-" + kernel.getName(), size, new Operation(){
+			    int[] sums = new int[resources];
+			    public void setUp(){
+			    }
+			    public long run(){
+				for(int t = 0; t < size; t++){
+				    if(kernel.fits(need, t*resources, work, resources)){
+					kernel.add(sums, need, t*resources, resources);
+				    }
+				}
+				return 0;
+			    }
+			})));
+		}
+	    }
+	    input.delete();
+	}
+	if(csvFile != null){
+	    writeCsv(results);
+	}
+    }
+
+    /* warm up, then run the operation until the measurement time is used up (at least once) */
+    private static Result measure(String name, int tasks, Operation op){
+	long end = System.nanoTime() + (long)(warmupSeconds * 1e9);
+	do {
+	    op.setUp();
+	    op.run();
+	} while(System.nanoTime() < end);
+
+	Result result = new Result(name, tasks);
+	long measureNanos = (long)(measureSeconds * 1e9);
+	while(result.iterations == 0 || result.nanos < measureNanos){
+	    op.setUp();
+	    long bytesBefore = allocatedBytes();
+	    long start = System.nanoTime();
+	    result.cycles += op.run();
+	    result.nanos += System.nanoTime() - start;
+	    long bytesAfter = allocatedBytes();
+	    result.bytes = (bytesBefore < 0 || result.bytes < 0) ? -1 : result.bytes + (bytesAfter - bytesBefore);
+	    result.iterations++;
+	}
+	return result;
+    }
+
+    /* bytes allocated by this thread so far, -1 if the JVM can't tell */
+    private static long allocatedBytes(){
+	java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	if(bean instanceof com.sun.management.ThreadMXBean){
+	    return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	return -1;
+    }
+
+    /* new simulation of the input file */
+    private static Banker load(String filename){
+	Banker b = new Banker();
+	b.readInputFile(filename);
+	return b;
+    }
+
+    /* number of simulated cycles is the finishing time of the last task */
+    private static long cycles(ArrayList<Banker.Task> completed){
+	long cycles = 0;
+	for(Banker.Task t : completed){
+	    cycles = Math.max(cycles, t.getTotalTime());
+	}
+	return cycles;
+    }
+
+    /* random state in the middle of a run: every task holds part of its claims, half of the units are given out */
+    private static ArrayList<Banker.Task> randomState(Banker b, ResourceState state){
+	Random rnd = new Random(seed);
+	int n = state.getNumOfTasks();
+	int m = state.getNumOfResources();
+	ArrayList<Banker.Task> tasks = new ArrayList<Banker.Task>();
+	long[] sumClaims = new long[m];
+	for(int t = 1; t <= n; t++){
+	    tasks.add(b.new Task(t, state));
+	    for(int r = 1; r <= m; r++){
+		int claim = 1 + rnd.nextInt(10);
+		state.setClaim(t, r, claim);
+		sumClaims[r-1] += claim;
+	    }
+	}
+	for(int r = 1; r <= m; r++){
+	    state.setAvailable(r, (int)Math.min(sumClaims[r-1], Integer.MAX_VALUE));
+	}
+	for(int t = 1; t <= n; t++){
+	    for(int r = 1; r <= m; r++){
+		int units = rnd.nextInt(state.getClaim(t, r) + 1) / 2;
+		if(units <= state.getAvailable(r)){
+		    state.allocate(t, r, units);
+		}
+	    }
+	}
+	return tasks;
+    }
+
+    private static Result print(Result r){
+	System.out.printf("%-14s %8d %10d %14.1f %14.0f %12.1f %12.3f %12.1f %14.0f%n", r.name, r.tasks, r.iterations, r.opsPerSecond(),
+			  r.nanosPerOp(), r.nanosPerCycle(), r.nanosPerCycleTask(), r.allocMBPerSecond(), r.allocBytesPerOp());
+	return r;
+    }
+
+    private static void writeCsv(ArrayList<Result> results) throws IOException {
+	PrintWriter out = new PrintWriter(new FileWriter(csvFile));
+	try{
+	    out.println("benchmark,tasks,resources,iterations,ops_per_s,ns_per_op,ns_per_cycle,ns_per_cycle_task,alloc_mb_per_s,alloc_bytes_per_op");
+	    for(Result r : results){
+		out.printf("%s,%d,%d,%d,%.3f,%.1f,%.1f,%.4f,%.3f,%.1f%n", r.name, r.tasks, resources, r.iterations, r.opsPerSecond(),
+			   r.nanosPerOp(), r.nanosPerCycle(), r.nanosPerCycleTask(), r.allocMBPerSecond(), r.allocBytesPerOp());
+	    }
+	}
+	finally{
+	    out.close();
+	}
+    }
+
+    private static void parseArgs(String[] args){
+	for(int i = 0; i+1 < args.length; i += 2){
+	    String value = args[i+1];
+	    switch(args[i]){
+	    case "-sizes":
+		String[] parts = value.split(",");
+		sizes = new int[parts.length];
+		for(int k = 0; k < parts.length; k++){
+		    sizes[k] = Integer.parseInt(parts[k].trim());
+		}
+		break;
+	    case "-resources":
+		resources = Integer.parseInt(value);
+		break;
+	    case "-skew":
+		skew = Double.parseDouble(value);
+		break;
+	    case "-compute":
+		compute = Integer.parseInt(value);
+		break;
+	    case "-contention":
+		contention = Double.parseDouble(value);
+		break;
+	    case "-seed":
+		seed = Long.parseLong(value);
+		break;
+	    case "-warmup":
+		warmupSeconds = Double.parseDouble(value);
+		break;
+	    case "-time":
+		measureSeconds = Double.parseDouble(value);
+		break;
+	    case "-bench":
+		benchmarks = value.toLowerCase();
+		break;
+	    case "-csv":
+		csvFile = value;
+		break;
+	    default:
+		System.out.println("Unknown option " + args[i]);
+	    }
+	}
+    }
+}//end_BankerBenchmark_class
@@ -0,0 +1,421 @@
+import java.util.ArrayList;
+
+/**
+ * Description: Dijkstra's Banker's algorithm: a request is only granted if the state stays safe,
+ * i.e. every task can still get its initial claim in some order, otherwise the task is blocked.
+ * Tasks that claim more than the units present or request more than their claim are aborted.
+ * Blocked requests are checked first at the start of every cycle. Safety is answered by an
+ * incremental SafetyChecker: every claim, grant, release and change of the running tasks is
+ * applied to it as it happens.
+ *
+ * With batched admission (-Dbanker.batchAdmission=true) the requests of consecutive running tasks
+ * are decided together when the first of them is reached. Granting a request to a running task
+ * only makes later requests harder, so if the state is safe with a prefix of the requests granted
+ * it is safe with any shorter prefix: the batch grants the longest safe prefix (one check when
+ * every request is safe, a galloping search otherwise), blocks the request after it and goes on
+ * with the rest. The grants are applied tentatively and rolled back one by one, the decisions are
+ * the same as checking every request on its own. Requests that can't be granted right away
+ * (more than the units available, over the claim) end a batch and are checked alone, and so are
+ * the blocked tasks retried at the start of a cycle: a granted blocked task doesn't run again before
+ * the next cycle, so it doesn't take part in the checks of the tasks after it.
+ *
+ * A blocked request that wasn't granted stays that way until some change can make the state easier
+ * to be safe in: units released (available at the end of the cycle) or a task leaving or joining the
+ * running tasks (a task that doesn't run keeps its units in a check). Grants and claims only make it
+ * harder, so a blocked task is only checked again when such a change happened since its last check,
+ * and when there are enough units to grant it.
+ *
+ * The checks of the blocked tasks can go through a SafetyCache (-Dbanker.safetyCacheBytes=n):
+ * a blocked request checked again with the same needs, running tasks and available units gets
+ * the answer it got before.
+ *
+ * When the policy runs on one component of the tasks (Banker.BankerByComponent) it keeps the
+ * timeline of the component: the cycles in which it found a request safe, and the cycles in which
+ * the state was unsafe at some point, watched after every change that can make it unsafe (claims,
+ * blocks, releases, aborts, tasks leaving or joining the running tasks) until a cycle starts in a
+ * safe state again.
+ */
+public class BankerPolicy implements AllocationPolicy {
+    private CycleEngine engine;
+    private ResourceState state;
+    private ActivityStore activities;
+    private SafetyChecker checker;
+    private SimulationMetrics metrics;
+    private int easedAt = 0; //number of changes so far that can make a blocked request safe
+    private int[] checkedAt; //easedAt at the last check of each blocked task, indexed by task number - 1
+    private SafetyCache cache; //answers of the checks of blocked tasks, null without a memory budget
+    private ResourceComponents.Timeline timeline; //null unless the input is one component of another input
+
+    /* batched admission: decisions taken ahead for the requests of the next running tasks */
+    private static final byte UNDECIDED = 0;
+    private static final byte GRANT = 1;
+    private static final byte BLOCK = 2;
+    private byte[] decision; //indexed by task number - 1, null unless requests are batched
+    private Banker.Task[] batchTasks; //tasks, resource types and units of the requests of a batch, in running order
+    private int[] batchResources;
+    private int[] batchUnits;
+    private byte[] batchDecisions;
+    private int[] batchDemand; //units of each resource type requested by the batch
+    private int applied; //requests of the batch looked at by the tentative allocation (blocked ones aren't allocated)
+
+    public String getName(){
+	return "Banker";
+    }
+
+    /* running tasks take part in safety checks */
+    public void start(CycleEngine engine){
+	this.engine = engine;
+	this.state = engine.getState();
+	this.activities = engine.getActivities();
+	this.metrics = engine.getMetrics();
+	this.checker = new SafetyChecker(state);
+	for(Banker.Task t : engine.getAllTasks()){
+	    checker.activate(t.getTaskNum());
+	}
+	this.checkedAt = new int[engine.getNumOfTasks()];
+	this.timeline = engine.getBanker().timeline;
+	if(Banker.safetyCacheBytes > 0){
+	    this.cache = new SafetyCache(engine.getNumOfResources(), Banker.safetyCacheBytes);
+	}
+	if(Banker.batchAdmission){
+	    int numOfTasks = engine.getNumOfTasks();
+	    this.decision = new byte[numOfTasks];
+	    this.batchTasks = new Banker.Task[numOfTasks];
+	    this.batchResources = new int[numOfTasks];
+	    this.batchUnits = new int[numOfTasks];
+	    this.batchDecisions = new byte[numOfTasks];
+	    this.batchDemand = new int[engine.getNumOfResources()];
+	}
+    }
+
+    /* tasks that released and terminated last cycle stop taking part in safety checks */
+    public void startCycle(ArrayList<Banker.Task> terminated){
+	for(Banker.Task t : terminated){
+	    retire(t.getTaskNum());
+	}
+	if(timeline != null && timeline.isUnsafe() && checker.isSafe()){
+	    timeline.safeAgain(engine.getCycle());
+	}
+    }
+
+    /*
+     *A blocked task takes part in the check as if it was running: granted if granting its request is safe.
+     *Tasks with nothing eased since their last check or more units requested than available aren't checked
+     */
+    public void retryBlocked(ArrayList<Banker.Task> blocked){
+	for(int q = 0; q < blocked.size(); q++){
+	    Banker.Task t = blocked.get(q);
+	    int taskNum = t.getTaskNum();
+	    int blockedActivity = t.getBlockedActivity();
+	    int resourceType = activities.getResourceType(blockedActivity);
+	    int numOfUnits = activities.getUnits(blockedActivity);
+	    if(checkedAt[taskNum-1] == easedAt || numOfUnits > state.getAvailable(resourceType)){
+		if(Banker.validateSafety && numOfUnits <= state.getAvailable(resourceType) && isSafeAfterRequest(t, resourceType, numOfUnits)){
+		    throw new IllegalStateException("Blocked Task "+taskNum+" skipped but its request of "+numOfUnits+" of resource "+resourceType+" is safe");
+		}
+		continue;
+	    }
+	    checkedAt[taskNum-1] = easedAt;
+	    if(isSafeBlocked(t, resourceType, numOfUnits)){
+		if(timeline != null){
+		    timeline.safe(engine.getCycle());
+		}
+		engine.unblock(t, resourceType, numOfUnits); //dropped from blocked list after the loop
+		checker.updateNeed(taskNum, resourceType);
+		watchSafety();
+	    }
+	}
+    }
+
+    /* claim exceeding the units present aborts the task */
+    public void initiate(Banker.Task t, int resourceType, int units){
+	int taskNum = t.getTaskNum();
+	int avail = state.getAvailable(resourceType);
+	if(units > avail){
+	    engine.abort(t, new AbortNotice(getName(), AbortNotice.CLAIM_EXCEEDS_UNITS, engine.getCycle(), taskNum, resourceType, units, avail));
+	    retire(taskNum);
+	}
+	else{
+	    t.setClaim(resourceType, units);
+	    checker.updateNeed(taskNum, resourceType);
+	}
+	watchSafety();
+    }
+
+    /* request exceeding the claim aborts the task, an unsafe request blocks it */
+    public void request(Banker.Task t, int action, int resourceType, int units){
+	int taskNum = t.getTaskNum();
+	//total units (including what's already allocated) being requested by task
+	int totalRequests = t.getAllocated(resourceType) + units;
+	if(totalRequests > t.getClaim(resourceType)){
+	    AbortNotice notice = new AbortNotice(getName(), AbortNotice.REQUEST_EXCEEDS_CLAIM, engine.getCycle(), taskNum, resourceType,
+						 totalRequests, t.getClaim(resourceType));
+	    state.releaseAll(taskNum); //its resources are available next cycle
+	    engine.abort(t, notice);
+	    retire(taskNum);
+	    watchSafety();
+	}
+	else if(isSafe(t, resourceType, units)){
+	    if(timeline != null){
+		timeline.safe(engine.getCycle());
+	    }
+	    if(units <= state.getAvailable(resourceType)){
+		engine.grant(t, resourceType, units);
+		checker.updateNeed(taskNum, resourceType);
+	    }
+	}
+	else{
+	    engine.block(t, action, resourceType, units);
+	    checker.deactivate(taskNum);
+	    checkedAt[taskNum-1] = ++easedAt; //checked just now
+	    watchSafety();
+	}
+    }
+
+    /* whether granting the request of a blocked task is safe, from the cache if it was checked in the same state before */
+    private boolean isSafeBlocked(Banker.Task t, int resourceType, int numOfUnits){
+	if(cache == null){
+	    return isSafeAfterRequest(t, resourceType, numOfUnits);
+	}
+	Boolean cached = cache.get(checker.getVersion(), state, t.getTaskNum(), resourceType, numOfUnits);
+	if(metrics != null){
+	    metrics.safetyCacheLookup(cached != null);
+	}
+	if(cached == null){
+	    boolean safe = isSafeAfterRequest(t, resourceType, numOfUnits);
+	    cache.put(safe);
+	    return safe;
+	}
+	if(Banker.validateSafety && cached != isSafeAfterRequest(t, resourceType, numOfUnits)){
+	    throw new IllegalStateException("Safety cache disagrees with the safety checker for Task "+t.getTaskNum()+" requesting "+numOfUnits+" of resource "+resourceType);
+	}
+	return cached;
+    }
+
+    /* whether granting a request of a running task is safe, decided with the requests after it if they are batched */
+    private boolean isSafe(Banker.Task t, int resourceType, int units){
+	if(decision == null){
+	    return isSafeAfterRequest(t, resourceType, units);
+	}
+	int index = t.getTaskNum()-1;
+	if(decision[index] == UNDECIDED){
+	    admitBatch(t, resourceType, units);
+	}
+	if(decision[index] == UNDECIDED){ //no batch, checked alone
+	    return isSafeAfterRequest(t, resourceType, units);
+	}
+	boolean safe = (decision[index] == GRANT);
+	decision[index] = UNDECIDED;
+	if(Banker.validateSafety && safe != isSafeAfterRequest(t, resourceType, units)){
+	    throw new IllegalStateException("Batched admission disagrees with the safety checker for Task "+t.getTaskNum()+" requesting "+units+" of resource "+resourceType);
+	}
+	return safe;
+    }
+
+    /*
+     *Decides the requests of t and of the running tasks right after it whose next activity is a request that
+     *is within their claim and can be granted with the units available (nothing else happens between them)
+     *@param: t: running task whose request is being run
+     *@param: resourceType, units: its request
+     */
+    private void admitBatch(Banker.Task t, int resourceType, int units){
+	int count = 0;
+	Banker.Task task = t;
+	int r = resourceType;
+	int u = units;
+	while(task != null && batchDemand[r-1] + u <= state.getAvailable(r)){
+	    batchTasks[count] = task;
+	    batchResources[count] = r;
+	    batchUnits[count] = u;
+	    batchDecisions[count] = UNDECIDED;
+	    batchDemand[r-1] += u;
+	    count++;
+	    task = engine.peekRunning(count);
+	    if(task != null){
+		int action = task.viewNextActivity();
+		r = activities.getResourceType(action);
+		u = activities.getUnits(action);
+		if(activities.getOpcode(action) != Banker.REQUEST || task.getAllocated(r) + u > task.getClaim(r)){
+		    task = null;
+		}
+	    }
+	}
+	for(int k = 0; k < count; k++){
+	    batchDemand[batchResources[k]-1] = 0;
+	}
+	if(count < 2){
+	    return;
+	}
+
+	applied = 0;
+	int from = 0; //first request not decided yet
+	boolean blocked = false;
+	while(from < count){
+	    int left = count - from;
+	    int safe = 0; //longest prefix of the requests left known to be safe
+	    int unsafe = left + 1; //shortest prefix known to be unsafe
+	    if(!blocked){ //until a request is blocked, try granting every request left at once
+		if(isSafeWith(from + left)){
+		    safe = left;
+		}
+		else{
+		    unsafe = left;
+		}
+	    }
+	    for(int len = 1; safe < left && len < unsafe; len *= 2){ //galloping search
+		if(isSafeWith(from + len)){
+		    safe = len;
+		}
+		else{
+		    unsafe = len;
+		}
+	    }
+	    while(unsafe - safe > 1 && safe < left){ //binary search between the two
+		int mid = (safe + unsafe) >>> 1;
+		if(isSafeWith(from + mid)){
+		    safe = mid;
+		}
+		else{
+		    unsafe = mid;
+		}
+	    }
+	    for(int k = from; k < from + safe; k++){
+		batchDecisions[k] = GRANT;
+	    }
+	    from += safe;
+	    if(from < count){ //the request after the safe prefix is blocked, its task stops taking part in the checks
+		rollback(from);
+		batchDecisions[from] = BLOCK;
+		checker.deactivate(batchTasks[from].getTaskNum());
+		blocked = true;
+		from++;
+	    }
+	}
+	rollback(0);
+	for(int k = 0; k < count; k++){
+	    int taskNum = batchTasks[k].getTaskNum();
+	    if(batchDecisions[k] == BLOCK){
+		checker.activate(taskNum); //the task still runs until its request is reached
+	    }
+	    decision[taskNum-1] = batchDecisions[k];
+	    batchTasks[k] = null;
+	}
+    }
+
+    /* whether the state is safe with the requests of the batch before end allocated (except the blocked ones) */
+    private boolean isSafeWith(int end){
+	while(applied < end){
+	    if(batchDecisions[applied] != BLOCK){
+		state.allocate(batchTasks[applied].getTaskNum(), batchResources[applied], batchUnits[applied]);
+		checker.updateNeed(batchTasks[applied].getTaskNum(), batchResources[applied]);
+	    }
+	    applied++;
+	}
+	rollback(end);
+	long start = (metrics != null) ? System.nanoTime() : 0;
+	boolean safe = checker.isSafe();
+	if(metrics != null){
+	    metrics.safetyCheck(System.nanoTime() - start);
+	}
+	return safe;
+    }
+
+    /* takes the tentative allocations of the requests from end on back */
+    private void rollback(int end){
+	while(applied > end){
+	    applied--;
+	    if(batchDecisions[applied] != BLOCK){
+		state.deallocate(batchTasks[applied].getTaskNum(), batchResources[applied], batchUnits[applied]);
+		checker.updateNeed(batchTasks[applied].getTaskNum(), batchResources[applied]);
+	    }
+	}
+    }
+
+    public void release(Banker.Task t, int resourceType, int units){
+	checker.updateNeed(t.getTaskNum(), resourceType);
+	watchSafety();
+    }
+    public void suspend(Banker.Task t){
+	leave(t.getTaskNum());
+	watchSafety();
+    }
+    public void resume(Banker.Task t){
+	checker.activate(t.getTaskNum());
+	easedAt++;
+	watchSafety();
+    }
+    /* the task left the safety checks when its compute started, its needs leave the top of the indexes now */
+    public void terminate(Banker.Task t){
+	checker.retire(t.getTaskNum());
+    }
+
+    /* the Banker's algorithm never deadlocks; units released this cycle are available next cycle */
+    public void endCycle(boolean everyTaskBlocked){
+	if(metrics != null){
+	    metrics.setSafetyCheckCounts(checker.getFastPathHits(), checker.getHintHits(), checker.getHintMisses());
+	}
+	for(int r = 1; r <= engine.getNumOfResources(); r++){
+	    if(state.getReleased(r) > 0){
+		easedAt++;
+		break;
+	    }
+	}
+    }
+
+    /* the timeline of a component notes the cycle in which its running tasks get into an unsafe state */
+    private void watchSafety(){
+	if(timeline != null && !timeline.isUnsafe() && !checker.isSafe()){
+	    timeline.unsafe(engine.getCycle());
+	}
+    }
+
+    /* the task won't run again */
+    private void retire(int taskNum){
+	if(checker.isActive(taskNum)){
+	    checker.retire(taskNum);
+	    easedAt++;
+	}
+    }
+
+    /* the task stops taking part in safety checks, blocked requests may be safe now */
+    private void leave(int taskNum){
+	if(checker.isActive(taskNum)){
+	    checker.deactivate(taskNum);
+	    easedAt++;
+	}
+    }
+
+    /*
+     *Checks if granting a request keeps the state safe
+     *The answer comes from the incremental safety checker. In validation mode it is also
+     *computed with Banker.isSafe over the running tasks (the tasks active in the checker, plus the
+     *requesting task if it is blocked) and a mismatch is reported as an error.
+     *
+     *@param: t: task making the request
+     *@param: resourceType: requested resource type
+     *@param: numOfUnits: number of requested units
+     *return: true if state is safe after granting the request, false otherwise
+     */
+    private boolean isSafeAfterRequest(Banker.Task t, int resourceType, int numOfUnits){
+	long start = (metrics != null) ? System.nanoTime() : 0;
+	boolean safe = checker.isSafeAfter(t.getTaskNum(), resourceType, numOfUnits);
+	if(metrics != null){
+	    metrics.safetyCheck(System.nanoTime() - start);
+	}
+	if(Banker.validateSafety){
+	    ArrayList<Banker.Task> runningTasks = new ArrayList<Banker.Task>();
+	    for(Banker.Task task : engine.getAllTasks()){
+		if(task == t || checker.isActive(task.getTaskNum())){
+		    runningTasks.add(task);
+		}
+	    }
+	    state.allocate(t.getTaskNum(), resourceType, numOfUnits);
+	    boolean expected = engine.getBanker().isSafe(runningTasks, state.copyAvailable());
+	    state.deallocate(t.getTaskNum(), resourceType, numOfUnits);
+	    if(safe != expected){
+		throw new IllegalStateException("Safety checker disagrees with isSafe for Task "+t.getTaskNum()+" requesting "+numOfUnits+" of resource "+resourceType);
+	    }
+	}
+	return safe;
+    }
+}//end_BankerPolicy_class
@@ -0,0 +1,82 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Description: Checks that simulating the independent groups of tasks of an input separately
+ * (-Dbanker.shardComponents=true) gives the same output as simulating the whole input. Every input is
+ * simulated both ways and the outputs are compared; the check fails (exit status 1) if any input
+ * differs, printing the input and the first line that differs. Without inputs it checks the inputs
+ * of the regression directory, inputs on which the two once differed.
+ *
+ * Aborts of different groups in the same cycle are listed by task number when the groups are split,
+ * so an input with such aborts can differ in their order only.
+ *
+ * Usage: java ComponentCheck [inputs...]
+ *        (inputs are files, directories or globs as in -batch)
+ */
+public class ComponentCheck {
+    private static final String REGRESSION_INPUTS = "regression";
+
+    public static void main(String[] args) throws IOException {
+	ArrayList<String> inputs = new ArrayList<String>();
+	for(String arg : (args.length == 0) ? new String[]{REGRESSION_INPUTS} : args){
+	    ArrayList<String> files = Banker.batchInputs(arg);
+	    if(files.isEmpty()){
+		System.out.println("Error: no input file matches " + arg);
+	    }
+	    inputs.addAll(files);
+	}
+	boolean shardComponents = Banker.shardComponents;
+	int failures = 0;
+	try{
+	    for(String input : inputs){
+		Banker.shardComponents = false;
+		String expected = simulate(input);
+		Banker.shardComponents = true;
+		String output = simulate(input);
+		if(!output.equals(expected)){
+		    System.out.println(input + " differs when its groups are simulated separately");
+		    printFirstDifference(expected, output);
+		    failures++;
+		}
+	    }
+	}
+	finally{
+	    Banker.shardComponents = shardComponents;
+	}
+	if(failures == 0){
+	    System.out.println(inputs.size() + " inputs: same output with the groups simulated separately");
+	}
+	System.exit((failures == 0) ? 0 : 1);
+    }
+
+    /* what the simulation of an input prints */
+    private static String simulate(String filename){
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	PrintStream out = new PrintStream(buffer);
+	try{
+	    new Banker(out).run(filename);
+	}
+	catch(RuntimeException e){
+	    out.println("Error: " + e);
+	}
+	out.flush();
+	return buffer.toString();
+    }
+
+    private static void printFirstDifference(String expected, String output){
+	String[] a = expected.split("\n", -1);
+	String[] b = output.split("\n", -1);
+	for(int line = 0; line < Math.max(a.length, b.length); line++){
+	    String x = (line < a.length) ? a[line] : "";
+	    String y = (line < b.length) ? b[line] : "";
+	    if(!x.equals(y)){
+		System.out.println("  line " + (line+1) + ", whole input: " + x);
+		System.out.println("  line " + (line+1) + ", separately:  " + y);
+		return;
+	    }
+	}
+    }
+}//end_ComponentCheck_class
@@ -0,0 +1,157 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Description: Checks that running the FIFO and Banker simulations of an input at the same time gives
+ * the same output as running them one after the other (-Dbanker.sequential=true).
+ *
+ * Every input is first simulated sequentially, which gives the expected output. Then in every round
+ * all inputs are simulated concurrently, several inputs at the same time on a pool of -threads threads
+ * as in batch mode, and each output is compared with the expected one. The check fails (exit status 1)
+ * on the first difference, printing the input and the first line that differs. Without inputs it
+ * generates some (see WorkloadGenerator).
+ *
+ * Usage: java ConcurrencyCheck [-rounds 20] [-threads 4] [-sizes 10,100,1000] [-seed 1] [inputs...]
+ *        (inputs are files, directories or globs as in -batch)
+ */
+public class ConcurrencyCheck {
+    private static int rounds = 20;
+    private static int threads = 4;
+    private static int[] sizes = {10, 100, 1000}; //tasks of the generated inputs
+    private static long seed = 1;
+    private static ArrayList<String> inputs = new ArrayList<String>();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+	parseArgs(args);
+	if(inputs.isEmpty()){
+	    generateInputs();
+	}
+	boolean sequential = Banker.sequential;
+	String[] expected = new String[inputs.size()];
+	Banker.sequential = true;
+	for(int k = 0; k < inputs.size(); k++){
+	    expected[k] = simulate(inputs.get(k));
+	}
+	Banker.sequential = false;
+	ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+	boolean ok = true;
+	try{
+	    for(int round = 1; round <= rounds && ok; round++){
+		ArrayList<Future<String>> outputs = new ArrayList<Future<String>>();
+		for(final String input : inputs){
+		    outputs.add(pool.submit(new Callable<String>(){
+			    public String call(){
+				return simulate(input);
+			    }
+			}));
+		}
+		for(int k = 0; k < inputs.size() && ok; k++){
+		    String output;
+		    try{
+			output = outputs.get(k).get();
+		    }
+		    catch(ExecutionException e){
+			output = "Error: " + e.getCause();
+		    }
+		    if(!output.equals(expected[k])){
+			System.out.println("Round " + round + ": " + inputs.get(k) + " differs from the sequential run");
+			printFirstDifference(expected[k], output);
+			ok = false;
+		    }
+		}
+	    }
+	}
+	finally{
+	    pool.shutdown();
+	    Banker.sequential = sequential;
+	}
+	if(ok){
+	    System.out.println(inputs.size() + " inputs, " + rounds + " concurrent rounds: same output as the sequential runs");
+	}
+	System.exit(ok ? 0 : 1);
+    }
+
+    /* what the simulation of an input prints */
+    private static String simulate(String filename){
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	PrintStream out = new PrintStream(buffer);
+	try{
+	    new Banker(out).run(filename);
+	}
+	catch(RuntimeException e){
+	    out.println("Error: " + e);
+	}
+	out.flush();
+	return buffer.toString();
+    }
+
+    private static void printFirstDifference(String expected, String output){
+	String[] a = expected.split("\n", -1);
+	String[] b = output.split("\n", -1);
+	for(int line = 0; line < Math.max(a.length, b.length); line++){
+	    String x = (line < a.length) ? a[line] : "";
+	    String y = (line < b.length) ? b[line] : "";
+	    if(!x.equals(y)){
+		System.out.println("  line " + (line+1) + ", sequential: " + x);
+		System.out.println("  line " + (line+1) + ", concurrent: " + y);
+		return;
+	    }
+	}
+    }
+
+    /* one input of every size, with low and high contention */
+    private static void generateInputs() throws IOException {
+	for(int size : sizes){
+	    for(double contention : new double[]{0.2, 0.9}){
+		File input = File.createTempFile("banker-check", ".txt");
+		input.deleteOnExit();
+		new WorkloadGenerator(size, 4, 2.0, 5, contention, seed + size).write(input);
+		inputs.add(input.getPath());
+	    }
+	}
+    }
+
+    private static void parseArgs(String[] args) throws IOException {
+	for(int i = 0; i < args.length; i++){
+	    if(!args[i].startsWith("-")){
+		ArrayList<String> files = Banker.batchInputs(args[i]);
+		if(files.isEmpty()){
+		    System.out.println("Error: no input file matches " + args[i]);
+		}
+		inputs.addAll(files);
+		continue;
+	    }
+	    if(i+1 == args.length){
+		throw new IllegalArgumentException("No value for option " + args[i]);
+	    }
+	    String value = args[++i];
+	    switch(args[i-1]){
+	    case "-rounds":
+		rounds = Integer.parseInt(value);
+		break;
+	    case "-threads":
+		threads = Integer.parseInt(value);
+		break;
+	    case "-sizes":
+		String[] parts = value.split(",");
+		sizes = new int[parts.length];
+		for(int k = 0; k < parts.length; k++){
+		    sizes[k] = Integer.parseInt(parts[k].trim());
+		}
+		break;
+	    case "-seed":
+		seed = Long.parseLong(value);
+		break;
+	    default:
+		throw new IllegalArgumentException("Unknown option " + args[i-1]);
+	    }
+	}
+    }
+}//end_ConcurrencyCheck_class
@@ -0,0 +1,359 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.PriorityQueue;
+
+/**
+ * Description: Cycle by cycle simulation of one resource allocation algorithm (an AllocationPolicy).
+ * Every cycle the engine
+ *   1. ends the computes due this cycle (a task whose next activity is terminate terminates),
+ *   2. lets the policy retry the requests of the blocked tasks,
+ *   3. runs the next activity of every running task: initiates and requests are decided by the
+ *      policy, releases and computes are the same for every policy, a task whose next activity
+ *      is terminate terminates in the same cycle,
+ *   4. puts the tasks whose compute ended or whose request was granted back into the running tasks,
+ *      lets the policy handle deadlocks and makes the units released this cycle available.
+ * Computing tasks wait in a queue ordered by the cycle their compute ends, and cycles in which
+ * nothing can happen are skipped (see Banker.skipIdleCycles).
+ */
+public class CycleEngine {
+    private Banker banker;
+    private AllocationPolicy policy;
+    private ResourceState state; //available units, allocations and claims of this simulation
+    private ActivityStore activities;
+    private ArrayList<AbortNotice> aborts; //why tasks were aborted, filled as they are aborted
+    private SimulationMetrics metrics; //null unless metrics are collected
+    private EventTracer tracer; //null unless tracing is on
+
+    private int cycle = 0;
+    private boolean idle; //nothing changed this cycle
+    private ArrayList<Banker.Task> allTasks;
+    private ArrayList<Banker.Task> runningTasks; //running tasks, the activity of runningTasks[position] is being run
+    private int position;
+    private ArrayList<Banker.Task> blockedTasks = new ArrayList<Banker.Task>(); //in the order the tasks were blocked
+    private ArrayList<Banker.Task> completedTasks = new ArrayList<Banker.Task>();
+    private ArrayList<Banker.Task> terminatedTasks = new ArrayList<Banker.Task>(); //tasks that released resources and terminated this cycle
+    private ArrayList<Banker.Task> resumed = new ArrayList<Banker.Task>(); //tasks to add back to the running tasks at the end of the cycle
+    private ArrayList<Banker.Task> granted = new ArrayList<Banker.Task>(); //blocked tasks whose request is granted this cycle
+    private PriorityQueue<Banker.Task> beingComputed = new PriorityQueue<Banker.Task>(11, Banker.COMPUTE_ORDER); //wake-up times of computing tasks
+    private long blockCount = 0;
+    private long computeCount = 0;
+    private boolean abortedBlocked = false; //a blocked task was aborted this cycle
+
+    /*
+     *Class constructor
+     *@param: banker: input of the simulation (activities, number of tasks, output)
+     *@param: policy: the algorithm simulated
+     *@param: state: resource state of the tasks, every unit is available
+     *@param: aborts: list the abort notices are added to
+     */
+    public CycleEngine(Banker banker, AllocationPolicy policy, ResourceState state, ArrayList<AbortNotice> aborts){
+	this.banker = banker;
+	this.policy = policy;
+	this.state = state;
+	this.activities = banker.activities;
+	this.aborts = aborts;
+	this.metrics = (Banker.metricsFormat == null) ? null : new SimulationMetrics(policy.getName(), state);
+    }
+
+    /* getters for the policies */
+    public int getCycle(){
+	return this.cycle;
+    }
+    public ResourceState getState(){
+	return this.state;
+    }
+    public ActivityStore getActivities(){
+	return this.activities;
+    }
+    public int getNumOfTasks(){
+	return this.banker.numOfTasks;
+    }
+    public int getNumOfResources(){
+	return this.banker.numOfResources;
+    }
+    /* all tasks of the simulation in input order */
+    public ArrayList<Banker.Task> getAllTasks(){
+	return this.allTasks;
+    }
+    public ArrayList<Banker.Task> getBlockedTasks(){
+	return this.blockedTasks;
+    }
+    /* running task whose activity is run k places after the current one this cycle, null if there is none */
+    public Banker.Task peekRunning(int k){
+	int index = position + k;
+	return (index < runningTasks.size()) ? runningTasks.get(index) : null;
+    }
+    public SimulationMetrics getMetrics(){
+	return this.metrics;
+    }
+    public Banker getBanker(){
+	return this.banker;
+    }
+
+    /* grant a request of a running task */
+    public void grant(Banker.Task t, int resourceType, int units){
+	state.allocate(t.getTaskNum(), resourceType, units);
+	if(metrics != null){
+	    metrics.grant();
+	}
+	if(tracer != null){
+	    tracer.record(EventTracer.GRANT, cycle, t.getTaskNum(), resourceType, units, state.getAvailable(resourceType));
+	}
+    }
+
+    /* grant the request of a blocked task, it runs again from the next cycle (in the order the tasks were blocked) */
+    public void unblock(Banker.Task t, int resourceType, int units){
+	state.allocate(t.getTaskNum(), resourceType, units);
+	if(tracer != null){
+	    tracer.record(EventTracer.GRANT, cycle, t.getTaskNum(), resourceType, units, state.getAvailable(resourceType));
+	    tracer.record(EventTracer.UNBLOCK, cycle, t.getTaskNum(), resourceType, units, cycle - t.getBlockedSince());
+	}
+	t.unblock(cycle);
+	granted.add(t);
+	if(metrics != null){
+	    metrics.grant();
+	}
+    }
+
+    /* block a running task on its request (action), it waits until the policy unblocks or aborts it */
+    public void block(Banker.Task t, int action, int resourceType, int units){
+	blockedTasks.add(t);
+	t.block(action, cycle, blockCount++);
+	if(metrics != null){
+	    metrics.block();
+	}
+	if(tracer != null){
+	    tracer.record(EventTracer.BLOCK, cycle, t.getTaskNum(), resourceType, units, state.getAvailable(resourceType));
+	}
+    }
+
+    /* a deadlock was found, its victims are aborted next */
+    public void deadlock(){
+	idle = false;
+	if(tracer != null){
+	    tracer.record(EventTracer.DEADLOCK, cycle, 0, 0, 0, blockedTasks.size());
+	}
+    }
+
+    /* units were released this cycle */
+    private boolean unitsComeBack(){
+	for(int r = 1; r <= state.getNumOfResources(); r++){
+	    if(state.getReleased(r) > 0){
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /* abort a running or blocked task, the policy releases what it holds (ResourceState.releaseAll) if it should */
+    public void abort(Banker.Task t, AbortNotice notice){
+	aborts.add(notice);
+	if(t.isBlocked()){
+	    t.unblock(cycle); //aborted task is dropped from the blocked list at the end of the cycle
+	    abortedBlocked = true;
+	}
+	t.abort();
+	completedTasks.add(t);
+	idle = false;
+	if(metrics != null){
+	    metrics.abort();
+	}
+	if(tracer != null){
+	    tracer.record(EventTracer.ABORT, cycle, t.getTaskNum(), 0, 0, 0);
+	}
+    }
+
+    /*
+     *Runs the simulation until every task terminated or was aborted
+     *@param: listOfTasks: tasks of the simulation, all running
+     *@return: list of terminated and aborted tasks sorted by task number, with their total and wait times
+     */
+    public ArrayList<Banker.Task> run(ArrayList<Banker.Task> listOfTasks){
+	int numOfTasks = banker.numOfTasks;
+	ArrayList<Banker.Task> unblockedTasks = listOfTasks;
+	runningTasks = unblockedTasks;
+	allTasks = new ArrayList<Banker.Task>(listOfTasks);
+	tracer = banker.openTracer(policy.getName());
+	policy.start(this);
+	boolean keepGoing = true;
+
+	while (keepGoing) {
+	    idle = true;
+	    abortedBlocked = false;
+	    cycle++;
+	    long blockedBefore = blockCount;
+
+	    //tasks that released and terminated last cycle already left the running tasks
+	    policy.startCycle(terminatedTasks);
+	    terminatedTasks.clear();
+
+	    //tasks whose compute ends this cycle
+	    while(!beingComputed.isEmpty() && beingComputed.peek().getWakeTime() == cycle){
+		Banker.Task task = beingComputed.poll();
+		task.endCompute();
+		idle = false;
+		if(tracer != null){
+		    tracer.record(EventTracer.COMPUTE_END, cycle, task.getTaskNum(), 0, 0, 0);
+		}
+		if(task.terminate()){ //if next activity is terminate, terminate
+		    if(tracer != null){
+		        tracer.record(EventTracer.TERMINATE, cycle, task.getTaskNum(), 0, 0, 0);
+		    }
+		    task.setTotalTime(cycle);
+		    completedTasks.add(task);
+		    policy.terminate(task);
+		}
+		else{ //add back into queue of running tasks
+		    resumed.add(task);
+		}
+	    }
+
+	    //blocked tasks are served before the running tasks
+	    if(!blockedTasks.isEmpty()){
+		policy.retryBlocked(blockedTasks);
+		if(!granted.isEmpty()){
+		    //unblocked tasks go back to the running tasks in the order they were blocked
+		    Collections.sort(granted, Banker.BLOCK_ORDER);
+		    resumed.addAll(granted);
+		    granted.clear();
+		    removeUnblocked(blockedTasks);
+		    idle = false;
+		}
+	    }
+
+	    int kept = 0; //tasks that keep running are compacted to the front of the list
+	    for(int n = 0; n < unblockedTasks.size(); n++){
+		Banker.Task t = unblockedTasks.get(n);
+		position = n; //the tasks after n are not compacted yet
+		boolean running = true; //task is still running after its activity
+		int taskNum = t.getTaskNum();
+		idle = false;
+		int action = t.getNextActivity();
+		byte activityType = activities.getOpcode(action);
+		int resourceType = activities.getResourceType(action);
+		int numOfUnits = activities.getUnits(action);
+		switch (activityType) {
+		case Banker.INITIATE:
+		    policy.initiate(t, resourceType, numOfUnits);
+		    running = !t.isAborted();
+		    break;
+
+		case Banker.REQUEST:
+		    policy.request(t, action, resourceType, numOfUnits);
+		    running = !t.isAborted() && !t.isBlocked();
+		    break;
+
+		case Banker.RELEASE: //free the task's resources, available next cycle
+		    state.release(taskNum, resourceType, numOfUnits);
+		    if(metrics != null){
+			metrics.release();
+		    }
+		    if(tracer != null){
+		        tracer.record(EventTracer.RELEASE, cycle, taskNum, resourceType, numOfUnits, t.getAllocated(resourceType));
+		    }
+		    policy.release(t, resourceType, numOfUnits);
+		    break;
+
+		case Banker.COMPUTE: //task is delayed for certain num of cycles
+		    int numCycles = resourceType; //this value for "compute" activity corresponds to num-of-cycles
+		    if(tracer != null && numCycles > 0){
+			tracer.record(EventTracer.COMPUTE_START, cycle, taskNum, 0, numCycles, cycle+numCycles-1);
+			if(numCycles == 1){
+			    tracer.record(EventTracer.COMPUTE_END, cycle, taskNum, 0, 0, 0);
+			}
+		    }
+		    if(numCycles > 1){
+			t.startCompute(cycle+numCycles-1, computeCount++); //this cycle is the first of numCycles
+			beingComputed.add(t);
+		    }
+		    else if(numCycles == 1){
+			resumed.add(t);
+		    }
+		    running = false;
+		    policy.suspend(t);
+		    break;
+		}//end_switch
+
+		//the next activity is to terminate which doesn't take a cycle so terminate,
+		//tasks that are being computed but will terminate after are ignored
+		if(t.terminate() && !t.isComputing()){
+		    t.setTotalTime(cycle); //set finish time
+		    boolean computedOneCycle = !resumed.isEmpty() && resumed.get(resumed.size()-1) == t;
+		    if(tracer != null && (running || computedOneCycle)){
+			tracer.record(EventTracer.TERMINATE, cycle, taskNum, 0, 0, 0);
+		    }
+		    if(running){
+			completedTasks.add(t);
+			terminatedTasks.add(t);
+			running = false;
+		    }
+		    else if(computedOneCycle){
+			resumed.remove(resumed.size()-1);
+			completedTasks.add(t);
+			policy.terminate(t);
+		    }
+		}
+		if(running){
+		    unblockedTasks.set(kept++, t);
+		}
+	    }
+	    unblockedTasks.subList(kept, unblockedTasks.size()).clear();
+
+	    //add tasks whose compute ended or that were unblocked this cycle back into the running tasks
+	    for(Banker.Task p : resumed){
+		unblockedTasks.add(p);
+		policy.resume(p);
+	    }
+	    resumed.clear();
+
+	    //deadlocks (tasks that terminated this cycle count as running until the end of the cycle)
+	    boolean everyTaskBlocked = (completedTasks.size() != numOfTasks) && unblockedTasks.isEmpty() && terminatedTasks.isEmpty()
+		&& beingComputed.isEmpty();
+	    int finishedBefore = completedTasks.size();
+	    policy.endCycle(everyTaskBlocked);
+	    //nothing blocked (a task leaving the running tasks can make a Banker request safe), nothing aborted and no units
+	    //come back (e.g. a task terminated holding the units the others wait on): every cycle after would be the same
+	    if(everyTaskBlocked && blockCount == blockedBefore && completedTasks.size() == finishedBefore && !unitsComeBack()){
+		throw new IllegalStateException(policy.getName() + ": every unfinished task is blocked in cycle " + cycle + " and no units come back");
+	    }
+	    if(abortedBlocked){
+		removeUnblocked(blockedTasks);
+	    }
+
+	    //units released this cycle are available from the next
+	    state.commitReleased();
+	    if(metrics != null){
+		metrics.endCycle(cycle, state, blockedTasks.size());
+	    }
+	    if(completedTasks.size() == numOfTasks){ //tell program to stop
+		keepGoing = false;
+	    }
+
+	    //nothing happened this cycle, so the blocked tasks will keep failing and nothing changes until the next
+	    //compute ends: jump to the cycle before it, the blocked tasks wait through the skipped cycles
+	    if(Banker.skipIdleCycles && idle && keepGoing && !beingComputed.isEmpty()){
+		cycle = Math.max(cycle, beingComputed.peek().getWakeTime() - 1);
+	    }
+	}//end_while
+
+	banker.closeTracer(tracer);
+	//sort list of completed tasks
+	Collections.sort(completedTasks);
+	return completedTasks;
+    }//end_run_method
+
+    /*
+     *Removes the tasks that are no longer blocked from a list of blocked tasks, keeping the order of the others
+     *@param: list of blocked tasks
+     */
+    private static void removeUnblocked(ArrayList<Banker.Task> blockedTasks){
+	int kept = 0;
+	for(int q = 0; q < blockedTasks.size(); q++){
+	    Banker.Task t = blockedTasks.get(q);
+	    if(t.isBlocked()){
+		blockedTasks.set(kept++, t);
+	    }
+	}
+	blockedTasks.subList(kept, blockedTasks.size()).clear();
+    }
+}//end_CycleEngine_class
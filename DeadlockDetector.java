@@ -0,0 +1,185 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Description: Deadlock detection and victim selection of the optimistic (FIFO) resource manager.
+ * The simulation tells the detector about every task that blocks on a request and every blocked
+ * task that is granted or aborted. Blocked tasks are kept in a set sorted by task number, so the
+ * lowest numbered victim is found without scanning the blocked list.
+ *
+ * A detection sorts the blocked requests of every resource type by units. Units only come back
+ * while victims are aborted, so whether a blocked request can be met is decided by walking the
+ * sorted requests of the resources the victim held, each request being passed at most once.
+ *
+ * resolveAllBlocked is the rule of the spec, used when every running task is blocked.
+ * resolveWaitFor (-Dbanker.waitForGraph=true) reduces the wait-for graph instead: tasks that are
+ * not blocked are assumed to finish and return what they hold, then every blocked task whose
+ * request can be met does the same; the blocked tasks left wait on each other and are deadlocked
+ * even though other tasks are still running, so they are found as soon as the last one blocks.
+ */
+public class DeadlockDetector {
+    private ResourceState state;
+    private int numOfTasks;
+    private int numOfResources;
+    private int[] unitsPresent; //units of each resource type, indexed from 0
+    private BitSet blocked = new BitSet(); //task numbers of the blocked tasks
+    private int[] waitResource; //resource type the blocked task waits on, indexed by task number - 1
+    private int[] waitUnits; //units it requested
+
+    /* scratch space of a detection */
+    private long[] requests; //(units, task index) of the blocked requests, grouped by resource type
+    private int[] start; //requests of resource r are requests[start[r]] to requests[start[r+1]-1]
+    private int[] pointer; //next request of each resource type that has not been passed
+    private int[] work; //units each resource type has (or will have) to give out
+    private boolean[] done; //task index reduced or aborted in this detection
+
+    /* Class constructor, called before the simulation starts when every unit is available */
+    public DeadlockDetector(ResourceState state){
+	this.state = state;
+	this.numOfTasks = state.getNumOfTasks();
+	this.numOfResources = state.getNumOfResources();
+	this.unitsPresent = state.copyAvailable();
+	this.waitResource = new int[numOfTasks];
+	this.waitUnits = new int[numOfTasks];
+	this.start = new int[numOfResources+1];
+	this.pointer = new int[numOfResources];
+	this.work = new int[numOfResources];
+	this.done = new boolean[numOfTasks];
+    }
+
+    /* the task is blocked on a request of units of resourceType */
+    public void block(int taskNum, int resourceType, int units){
+	blocked.set(taskNum);
+	waitResource[taskNum-1] = resourceType;
+	waitUnits[taskNum-1] = units;
+    }
+    /* the task is no longer blocked (granted or aborted) */
+    public void unblock(int taskNum){
+	blocked.clear(taskNum);
+    }
+    public int getNumOfBlocked(){
+	return blocked.cardinality();
+    }
+
+    /*
+     *Deadlock of every running task (the spec's rule): the lowest numbered blocked task is aborted until
+     *the request of some blocked task can be met with the units available next cycle, or no task is blocked
+     *return: task numbers to abort in the order they are aborted, the state isn't changed
+     */
+    public int[] resolveAllBlocked(){
+	int numOfBlocked = sortRequests();
+	for(int r = 0; r < numOfResources; r++){
+	    work[r] = state.getAvailable(r+1) + state.getReleased(r+1);
+	}
+	int[] victims = new int[numOfBlocked];
+	int count = 0;
+	boolean met = false;
+	for(int v = blocked.nextSetBit(0); v >= 0 && !met; v = blocked.nextSetBit(v+1)){
+	    victims[count++] = v;
+	    done[v-1] = true;
+	    //only the resources the victim held got units back
+	    for(int r = 0; r < numOfResources; r++){
+		int held = state.getAllocated(v, r+1);
+		if(held > 0){
+		    work[r] += held;
+		    met |= canMeet(r);
+		}
+	    }
+	}
+	return finish(victims, count);
+    }
+
+    /*
+     *Deadlock among some of the tasks: reduces the wait-for graph and aborts the lowest numbered deadlocked
+     *task until no blocked task is left deadlocked
+     *return: task numbers to abort in the order they are aborted (none if there is no deadlock), the state isn't changed
+     */
+    public int[] resolveWaitFor(){
+	int numOfBlocked = sortRequests();
+	//every unit not held by a blocked task is available now or comes back when its holder finishes
+	System.arraycopy(unitsPresent, 0, work, 0, numOfResources);
+	for(int v = blocked.nextSetBit(0); v >= 0; v = blocked.nextSetBit(v+1)){
+	    for(int r = 0; r < numOfResources; r++){
+		work[r] -= state.getAllocated(v, r+1);
+	    }
+	}
+	int left = numOfBlocked - reduce();
+	int[] victims = new int[left];
+	int count = 0;
+	for(int v = blocked.nextSetBit(0); v >= 0 && left > 0; v = blocked.nextSetBit(v+1)){
+	    if(done[v-1]){
+		continue;
+	    }
+	    victims[count++] = v;
+	    done[v-1] = true;
+	    left--;
+	    for(int r = 0; r < numOfResources; r++){
+		work[r] += state.getAllocated(v, r+1);
+	    }
+	    left -= reduce();
+	}
+	return finish(victims, count);
+    }
+
+    /* groups the blocked requests by resource type sorted by units, returns the number of blocked tasks */
+    private int sortRequests(){
+	int numOfBlocked = blocked.cardinality();
+	if(requests == null || requests.length < numOfBlocked){
+	    requests = new long[Math.max(numOfBlocked, 16)];
+	}
+	Arrays.fill(start, 0);
+	for(int v = blocked.nextSetBit(0); v >= 0; v = blocked.nextSetBit(v+1)){
+	    start[waitResource[v-1]]++; //count of resource r lands in start[r+1]
+	}
+	for(int r = 0; r < numOfResources; r++){
+	    start[r+1] += start[r];
+	    pointer[r] = start[r];
+	}
+	for(int v = blocked.nextSetBit(0); v >= 0; v = blocked.nextSetBit(v+1)){
+	    int r = waitResource[v-1]-1;
+	    requests[pointer[r]++] = ((long)waitUnits[v-1] << 32) | (v-1);
+	}
+	for(int r = 0; r < numOfResources; r++){
+	    Arrays.sort(requests, start[r], start[r+1]);
+	    pointer[r] = start[r];
+	}
+	return numOfBlocked;
+    }
+
+    /* whether a request of resource r not passed yet can be met, aborted tasks are passed on the way */
+    private boolean canMeet(int r){
+	while(pointer[r] < start[r+1] && done[(int)requests[pointer[r]]]){
+	    pointer[r]++;
+	}
+	return pointer[r] < start[r+1] && (int)(requests[pointer[r]] >>> 32) <= work[r];
+    }
+
+    /* lets every blocked task whose request can be met finish and return what it holds, returns the number of tasks reduced */
+    private int reduce(){
+	int reduced = 0;
+	boolean changed = true;
+	while(changed){
+	    changed = false;
+	    for(int r = 0; r < numOfResources; r++){
+		while(canMeet(r)){
+		    int t = (int)requests[pointer[r]++];
+		    done[t] = true;
+		    reduced++;
+		    changed = true;
+		    for(int s = 0; s < numOfResources; s++){
+			work[s] += state.getAllocated(t+1, s+1);
+		    }
+		}
+	    }
+	}
+	return reduced;
+    }
+
+    /* clears the scratch marks and returns the victims */
+    private int[] finish(int[] victims, int count){
+	for(int k = start[0]; k < start[numOfResources]; k++){
+	    done[(int)requests[k]] = false;
+	}
+	return Arrays.copyOf(victims, count);
+    }
+}//end_DeadlockDetector_class
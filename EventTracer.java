@@ -0,0 +1,205 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Description: Binary trace of the allocator decisions of one simulation (-Dbanker.trace=true).
+ * Every event is a fixed-width record written into a preallocated ring buffer by the simulation;
+ * a background thread copies the records into a memory-mapped file. The flusher is woken up each
+ * time another half of the ring has been written, the simulation only waits if the ring is full.
+ * Nothing is allocated per event and nothing is formatted, so the simulation thread pays a few
+ * nanoseconds per event. TraceReader turns a trace into text or CSV.
+ *
+ * File layout (big-endian): a 16 byte header
+ *   int magic "BKTR", short version, short record size, int numOfTasks, int numOfResources
+ * followed by 24 byte records
+ *   int cycle, byte event, byte algorithm (0 FIFO, 1 Banker), short 0, int task, int resource, int units, int value
+ *
+ * Events and the meaning of their fields:
+ *   grant          resource, units granted, value = units of the resource still available
+ *   block          resource, units requested, value = units of the resource available
+ *   unblock        resource, units granted to the blocked task, value = cycles it waited
+ *   release        resource, units released, value = units of the resource the task still holds
+ *   compute_start  units = number of cycles, value = cycle the compute ends
+ *   compute_end    the task is running again
+ *   abort          the task is aborted
+ *   deadlock       task 0, value = number of blocked tasks
+ *   terminate      the task terminates
+ */
+public class EventTracer implements Closeable {
+    /* event types, EVENT_NAMES[event] is the name used by TraceReader */
+    public static final byte GRANT = 0;
+    public static final byte BLOCK = 1;
+    public static final byte UNBLOCK = 2;
+    public static final byte RELEASE = 3;
+    public static final byte COMPUTE_START = 4;
+    public static final byte COMPUTE_END = 5;
+    public static final byte ABORT = 6;
+    public static final byte DEADLOCK = 7;
+    public static final byte TERMINATE = 8;
+    public static final String[] EVENT_NAMES = {"grant", "block", "unblock", "release", "compute_start", "compute_end",
+						"abort", "deadlock", "terminate"};
+    public static final String[] ALGORITHM_NAMES = {"FIFO", "Banker"};
+
+    public static final int MAGIC = 0x424b5452; //"BKTR"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 24;
+    private static final long MAP_SIZE = 1L << 22; //the file is mapped 4 MB at a time
+    private static final long FLUSH_INTERVAL = 10000000; //nanoseconds the flusher sleeps when it isn't woken up
+
+    private byte algorithm;
+    private ByteBuffer ring;
+    private int capacity; //records in the ring, a power of two
+    private AtomicLong head = new AtomicLong(); //records written by the simulation
+    private AtomicLong tail = new AtomicLong(); //records copied to the file
+    private long nextHead = 0;
+    private long wakeAt; //head at which the flusher is woken up next
+    private long limit; //head up to which records can be written without looking at tail, at most wakeAt
+    private volatile boolean closed = false;
+    private volatile IOException failure = null;
+
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long written = 0; //bytes in the file
+    private Thread flusher;
+    private ByteBuffer source; //view of the ring used to copy records
+
+    /*
+     *Class constructor, creates the trace file and starts the flusher thread
+     *@param: filename: trace file, it is overwritten
+     *@param: algorithm: 0 for FIFO, 1 for Banker
+     *@param: numOfTasks, numOfResources: size of the simulation, stored in the header
+     *@param: ringRecords: size of the ring buffer in records (rounded up to a power of two)
+     */
+    public EventTracer(String filename, byte algorithm, int numOfTasks, int numOfResources, int ringRecords) throws IOException {
+	this.algorithm = algorithm;
+	this.capacity = Integer.highestOneBit(Math.max(ringRecords - 1, 1)) << 1;
+	this.ring = ByteBuffer.allocate(capacity*RECORD_SIZE);
+	this.wakeAt = capacity/2;
+	this.limit = wakeAt;
+	this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, MAP_SIZE);
+	mapped.putInt(MAGIC).putShort(VERSION).putShort((short)RECORD_SIZE).putInt(numOfTasks).putInt(numOfResources);
+	written = HEADER_SIZE;
+	this.source = ring.duplicate();
+	this.flusher = new Thread(new Runnable(){
+		public void run(){
+		    flush();
+		}
+	    }, "trace-flusher " + filename);
+	flusher.setDaemon(true);
+	flusher.start();
+    }
+
+    /* write one event, called by the simulation thread only */
+    public void record(byte event, int cycle, int task, int resource, int units, int value){
+	long h = nextHead;
+	if(h >= limit){
+	    if(h >= wakeAt){
+		LockSupport.unpark(flusher);
+		wakeAt = h + capacity/2;
+	    }
+	    long t;
+	    while(h - (t = tail.get()) >= capacity){ //ring is full, wait for the flusher
+		LockSupport.parkNanos(1000);
+	    }
+	    limit = Math.min(wakeAt, t + capacity); //slots up to t + capacity have been copied
+	}
+	int pos = (int)(h & (capacity-1)) * RECORD_SIZE;
+	ring.putInt(pos, cycle);
+	ring.put(pos+4, event);
+	ring.put(pos+5, algorithm);
+	ring.putShort(pos+6, (short)0);
+	ring.putInt(pos+8, task);
+	ring.putInt(pos+12, resource);
+	ring.putInt(pos+16, units);
+	ring.putInt(pos+20, value);
+	nextHead = h+1;
+	head.lazySet(h+1); //publishes the record to the flusher
+    }
+
+    /* write the records left in the ring, stop the flusher and cut the file to its length */
+    public void close() throws IOException {
+	if(closed){
+	    return;
+	}
+	closed = true;
+	LockSupport.unpark(flusher);
+	try{
+	    flusher.join();
+	}
+	catch(InterruptedException e){
+	    Thread.currentThread().interrupt();
+	}
+	mapped = null;
+	try{
+	    channel.truncate(written);
+	}
+	finally{
+	    channel.close();
+	}
+	if(failure != null){
+	    throw failure;
+	}
+    }
+
+    /* flusher thread: copy published records to the file until the tracer is closed and the ring is empty */
+    private void flush(){
+	while(true){
+	    boolean done = closed; //read before head, so no record published before close() is missed
+	    if(!drain()){
+		if(done){
+		    return;
+		}
+		LockSupport.parkNanos(FLUSH_INTERVAL);
+	    }
+	}
+    }
+
+    /* copy the published records to the file, returns false if there were none */
+    private boolean drain(){
+	long h = head.get();
+	long t = tail.get();
+	if(h == t){
+	    return false;
+	}
+	try{
+	    if(failure == null){
+		//the records wrap around the end of the ring at most once
+		int from = (int)(t & (capacity-1));
+		int count = (int)(h - t);
+		int first = Math.min(count, capacity - from);
+		copy(from, first);
+		copy(0, count - first);
+	    }
+	}
+	catch(IOException e){ //records are dropped from now on, close() reports the error
+	    failure = e;
+	}
+	tail.lazySet(h);
+	return true;
+    }
+
+    private void copy(int fromRecord, int records) throws IOException {
+	int pos = fromRecord*RECORD_SIZE;
+	int end = pos + records*RECORD_SIZE;
+	while(pos < end){
+	    if(!mapped.hasRemaining()){
+		mapped = channel.map(FileChannel.MapMode.READ_WRITE, written, MAP_SIZE);
+	    }
+	    int n = Math.min(end - pos, mapped.remaining());
+	    source.limit(pos + n).position(pos);
+	    mapped.put(source);
+	    pos += n;
+	    written += n;
+	}
+    }
+}//end_EventTracer_class
@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+
+/**
+ * Description: Optimistic resource manager: a request is granted if there are enough units
+ * available, otherwise the task is blocked. Blocked requests are granted in the order the tasks
+ * were blocked as soon as units come back. Claims are ignored, so the tasks can deadlock; a
+ * deadlock is resolved by aborting the blocked task with the lowest task number until a blocked
+ * request can be met (see DeadlockDetector).
+ */
+public class FifoPolicy implements AllocationPolicy {
+    private CycleEngine engine;
+    private ResourceState state;
+    private ActivityStore activities;
+    private DeadlockDetector detector;
+    private Banker.Task[] tasksByNum; //victims are picked by task number
+    //blocked tasks by the resource type they wait on, a queue is only checked when the resource got units back
+    private ArrayList<ArrayList<Banker.Task>> waitQueues = new ArrayList<ArrayList<Banker.Task>>();
+    private boolean[] unitsReturned;
+    private boolean blockedThisCycle; //a task blocked, it may complete a deadlock of some of the tasks
+
+    public String getName(){
+	return "FIFO";
+    }
+
+    public void start(CycleEngine engine){
+	this.engine = engine;
+	this.state = engine.getState();
+	this.activities = engine.getActivities();
+	this.detector = new DeadlockDetector(state);
+	int numOfResources = engine.getNumOfResources();
+	this.unitsReturned = new boolean[numOfResources];
+	for(int r = 0; r < numOfResources; r++){
+	    waitQueues.add(new ArrayList<Banker.Task>());
+	}
+	this.tasksByNum = new Banker.Task[engine.getNumOfTasks()];
+	for(Banker.Task t : engine.getAllTasks()){
+	    tasksByNum[t.getTaskNum()-1] = t;
+	}
+    }
+
+    public void startCycle(ArrayList<Banker.Task> terminated){
+	blockedThisCycle = false;
+    }
+
+    /* only blocked tasks waiting on a resource that got units back since they were last checked can be granted */
+    public void retryBlocked(ArrayList<Banker.Task> blocked){
+	for(int r = 1; r <= unitsReturned.length; r++){
+	    if(!unitsReturned[r-1]){
+		continue;
+	    }
+	    unitsReturned[r-1] = false;
+	    ArrayList<Banker.Task> queue = waitQueues.get(r-1);
+	    int kept = 0;
+	    for(int q = 0; q < queue.size(); q++){
+		Banker.Task t = queue.get(q);
+		if(!t.isBlocked()){ //aborted because of a deadlock
+		    continue;
+		}
+		int numOfUnits = activities.getUnits(t.getBlockedActivity());
+		if(numOfUnits <= state.getAvailable(r)){ //grant request
+		    engine.unblock(t, r, numOfUnits);
+		    detector.unblock(t.getTaskNum());
+		}
+		else{
+		    queue.set(kept++, t);
+		}
+	    }
+	    while(queue.size() > kept){
+		queue.remove(queue.size()-1);
+	    }
+	}
+    }
+
+    /* FIFO algorithm ignores initiate activity */
+    public void initiate(Banker.Task t, int resourceType, int units){
+    }
+
+    public void request(Banker.Task t, int action, int resourceType, int units){
+	if(units <= state.getAvailable(resourceType)){ //grant request
+	    engine.grant(t, resourceType, units);
+	}
+	else{ //block task
+	    engine.block(t, action, resourceType, units);
+	    waitQueues.get(resourceType-1).add(t);
+	    detector.block(t.getTaskNum(), resourceType, units);
+	    blockedThisCycle = true;
+	}
+    }
+
+    public void release(Banker.Task t, int resourceType, int units){
+    }
+    public void suspend(Banker.Task t){
+    }
+    public void resume(Banker.Task t){
+    }
+    public void terminate(Banker.Task t){
+    }
+
+    /* deadlock of every running task (spec), or of some of the tasks as soon as the last of them blocks (see Banker.waitForGraph) */
+    public void endCycle(boolean everyTaskBlocked){
+	int[] victims = null;
+	if(everyTaskBlocked){
+	    victims = detector.resolveAllBlocked();
+	    if(victims.length == 0){ //nothing runs, computes or waits on a request, so nothing would ever change
+		throw new IllegalStateException("No task to abort in the deadlock of cycle " + engine.getCycle());
+	    }
+	}
+	else if(Banker.waitForGraph && blockedThisCycle){
+	    victims = detector.resolveWaitFor();
+	}
+	if(victims != null && victims.length > 0){
+	    engine.deadlock();
+	    for(int v : victims){
+		Banker.Task victim = tasksByNum[v-1];
+		int abortedAct = victim.getBlockedActivity();
+		int resourceType = activities.getResourceType(abortedAct);
+		AbortNotice notice = new AbortNotice(getName(), AbortNotice.DEADLOCK, engine.getCycle(), v, resourceType,
+						     activities.getUnits(abortedAct), state.getAvailable(resourceType));
+		state.releaseAll(v); //its resources are available next cycle
+		detector.unblock(v);
+		engine.abort(victim, notice);
+	    }
+	}
+	//blocked tasks waiting on a resource that got units back are checked next cycle
+	for(int r = 1; r <= unitsReturned.length; r++){
+	    if(state.getReleased(r) > 0){
+		unitsReturned[r-1] = true;
+	    }
+	}
+    }
+}//end_FifoPolicy_class
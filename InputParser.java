@@ -0,0 +1,171 @@
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Description: Reads input files byte by byte, replacing java.util.Scanner.
+ * The file is read through a FileChannel into one reused buffer; gzip compressed
+ * files (recognised by their magic number) are decompressed on the fly. Numbers are
+ * decoded straight from the bytes and activity names are matched against the known
+ * keywords and returned as opcodes (see Banker.INITIATE ...), so reading a file
+ * doesn't create any Strings.
+ */
+public class InputParser implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    //keywords indexed by opcode
+    private static final byte[][] KEYWORDS = new byte[Banker.ACTIVITY_NAMES.length][];
+    static {
+	for(int op = 0; op < KEYWORDS.length; op++){
+	    KEYWORDS[op] = Banker.ACTIVITY_NAMES[op].getBytes();
+	}
+    }
+
+    private ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] word = new byte[16]; //current keyword
+    private boolean endOfInput = false;
+
+    /* Class constructor, opens the file (plain text or gzip) */
+    public InputParser(String filename) throws IOException {
+	Path path = Paths.get(filename);
+	FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+	ByteBuffer magic = ByteBuffer.allocate(2);
+	while(magic.hasRemaining() && file.read(magic) >= 0){
+	}
+	if(magic.position() == 2 && (magic.get(0) & 0xff) == 0x1f && (magic.get(1) & 0xff) == 0x8b){
+	    file.close();
+	    this.channel = Channels.newChannel(new GZIPInputStream(new FileInputStream(filename), BUFFER_SIZE));
+	}
+	else{
+	    file.position(0);
+	    this.channel = file;
+	}
+	this.buffer.limit(0);
+    }
+
+    /* returns true if there is another token in the input */
+    public boolean hasNext() throws IOException {
+	return skipWhitespace();
+    }
+
+    /*
+     *Reads the next token as an int
+     *@return: value of the number
+     */
+    public int nextInt() throws IOException {
+	if(!skipWhitespace()){
+	    throw new IOException("Unexpected end of input, expected a number");
+	}
+	boolean negative = false;
+	byte b = buffer.get(buffer.position());
+	if(b == '-' || b == '+'){
+	    negative = (b == '-');
+	    buffer.get();
+	}
+	long value = 0;
+	int digits = 0;
+	while(fill()){
+	    b = buffer.get(buffer.position());
+	    if(b < '0' || b > '9'){
+		break;
+	    }
+	    buffer.get();
+	    value = value*10 + (b - '0');
+	    if(value > Integer.MAX_VALUE + 1L){
+		throw new IOException("Number out of range");
+	    }
+	    digits++;
+	}
+	if(digits == 0 || (fill() && !isWhitespace(buffer.get(buffer.position())))){
+	    throw new IOException("Expected a number");
+	}
+	value = negative ? -value : value;
+	if(value > Integer.MAX_VALUE){
+	    throw new IOException("Number out of range");
+	}
+	return (int)value;
+    }
+
+    /*
+     *Reads the next token as an activity name
+     *@return: opcode of the activity
+     */
+    public byte nextActivity() throws IOException {
+	if(!skipWhitespace()){
+	    throw new IOException("Unexpected end of input, expected an activity");
+	}
+	int length = 0;
+	while(fill()){
+	    byte b = buffer.get(buffer.position());
+	    if(isWhitespace(b)){
+		break;
+	    }
+	    buffer.get();
+	    if(length < word.length){
+		word[length] = b;
+	    }
+	    length++;
+	}
+	for(byte op = 0; op < KEYWORDS.length; op++){
+	    byte[] keyword = KEYWORDS[op];
+	    if(keyword.length == length){
+		int k = 0;
+		while(k < length && keyword[k] == word[k]){
+		    k++;
+		}
+		if(k == length){
+		    return op;
+		}
+	    }
+	}
+	throw new IOException("Unknown activity " + new String(word, 0, Math.min(length, word.length)));
+    }
+
+    public void close() throws IOException {
+	this.channel.close();
+    }
+
+    /* make sure the buffer has at least one byte, returns false at the end of input */
+    private boolean fill() throws IOException {
+	if(buffer.hasRemaining()){
+	    return true;
+	}
+	if(endOfInput){
+	    return false;
+	}
+	buffer.clear();
+	int n = 0;
+	while(n == 0){
+	    n = channel.read(buffer);
+	}
+	buffer.flip();
+	if(n < 0){
+	    endOfInput = true;
+	    return false;
+	}
+	return true;
+    }
+
+    /* skip whitespace, returns false at the end of input */
+    private boolean skipWhitespace() throws IOException {
+	while(fill()){
+	    if(!isWhitespace(buffer.get(buffer.position()))){
+		return true;
+	    }
+	    buffer.get();
+	}
+	return false;
+    }
+
+    private static boolean isWhitespace(byte b){
+	return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0b;
+    }
+}//end_InputParser_class
@@ -0,0 +1,91 @@
+/**
+ * Description: Histogram of latencies in nanoseconds with HdrHistogram-style buckets.
+ * Values below 8 get a bucket each; above that every power of two is split into 8 buckets
+ * of equal width, so a bucket is at most 12.5% wide compared to its values and any long
+ * fits in 496 buckets. Recording a value is a few bit operations and one array increment.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS; //buckets per power of two
+    private static final int NUM_BUCKETS = SUB_COUNT + (64 - SUB_BITS)*SUB_COUNT;
+
+    private long[] counts = new long[NUM_BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /* add one latency (negative values count as 0) */
+    public void record(long nanos){
+	long value = Math.max(nanos, 0);
+	counts[bucket(value)]++;
+	count++;
+	sum += value;
+	min = Math.min(min, value);
+	max = Math.max(max, value);
+    }
+
+    /* getters */
+    public long getCount(){
+	return this.count;
+    }
+    public long getMin(){
+	return count == 0 ? 0 : this.min;
+    }
+    public long getMax(){
+	return this.max;
+    }
+    public double getMean(){
+	return count == 0 ? 0 : (double)sum / count;
+    }
+    public int getNumOfBuckets(){
+	return NUM_BUCKETS;
+    }
+    public long getBucketCount(int bucket){
+	return this.counts[bucket];
+    }
+
+    /* smallest value of a bucket */
+    public static long bucketFrom(int bucket){
+	if(bucket < SUB_COUNT){
+	    return bucket;
+	}
+	int shift = (bucket - SUB_COUNT) / SUB_COUNT;
+	int sub = (bucket - SUB_COUNT) % SUB_COUNT;
+	return (long)(SUB_COUNT + sub) << shift;
+    }
+    /* largest value of a bucket */
+    public static long bucketTo(int bucket){
+	return (bucket == NUM_BUCKETS-1) ? Long.MAX_VALUE : bucketFrom(bucket+1) - 1;
+    }
+
+    /*
+     *Value at a percentile, reported as the largest value of the bucket it falls in (but at most the maximum)
+     *@param: percentile between 0 and 100
+     *return: latency in nanoseconds
+     */
+    public long getPercentile(double percentile){
+	if(count == 0){
+	    return 0;
+	}
+	long rank = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+	long seen = 0;
+	for(int b = 0; b < NUM_BUCKETS; b++){
+	    seen += counts[b];
+	    if(seen >= rank){
+		return Math.min(bucketTo(b), max);
+	    }
+	}
+	return max;
+    }
+
+    private static int bucket(long value){
+	int exp = 63 - Long.numberOfLeadingZeros(value | 1); //highest bit set
+	if(exp < SUB_BITS){
+	    return (int)value;
+	}
+	int shift = exp - SUB_BITS;
+	int sub = (int)(value >>> shift) & (SUB_COUNT-1);
+	return SUB_COUNT + shift*SUB_COUNT + sub;
+    }
+}//end_LatencyHistogram_class
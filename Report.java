@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.io.PrintWriter;
+
+/**
+ * Description: Writes the results of the FIFO and Banker simulations of one input:
+ * text (the table printed by default), csv or json (-Dbanker.report=csv or json).
+ * A report writes into a PrintWriter that the caller buffers and flushes once, and every
+ * row is assembled in a StringBuilder, so writing the report of 10^5 tasks is a few
+ * milliseconds. To add a format, extend Report and return it from forFormat.
+ */
+public abstract class Report {
+    /*
+     *Writes the report of one input
+     *@param: out: where to write, buffered by the caller
+     *@param: input: name of the input file
+     *@param: fifo, banker: completed tasks of each simulation, sorted by task number
+     *@param: aborts: why tasks were aborted, in the order they were aborted (FIFO first)
+     */
+    public abstract void write(PrintWriter out, String input, ArrayList<Banker.Task> fifo, ArrayList<Banker.Task> banker,
+			       ArrayList<AbortNotice> aborts);
+
+    /* report of a format name (text, csv or json), null if the format is unknown */
+    public static Report forFormat(String format){
+	if(format == null || format.equalsIgnoreCase("text")){
+	    return new TextReport();
+	}
+	if(format.equalsIgnoreCase("csv")){
+	    return new CsvReport();
+	}
+	if(format.equalsIgnoreCase("json")){
+	    return new JsonReport();
+	}
+	return null;
+    }
+
+    /* wait time as a percentage of the total time, computed in float like the original table */
+    static float waitPercent(int waitTime, int totalTime){
+	return 100*((float)waitTime/(float)totalTime);
+    }
+
+    /* appends a percentage with two decimals, without going through a Formatter */
+    static void twoDecimals(StringBuilder line, float percent){
+	long hundredths = Math.round((double)percent*100);
+	line.append(hundredths/100).append('.');
+	if(hundredths%100 < 10){
+	    line.append('0');
+	}
+	line.append(hundredths%100);
+    }
+
+    /* the abort messages and the two column table of total time, wait time and wait percentage */
+    static class TextReport extends Report {
+	public void write(PrintWriter out, String input, ArrayList<Banker.Task> fifo, ArrayList<Banker.Task> banker,
+			  ArrayList<AbortNotice> aborts){
+	    for(AbortNotice a : aborts){
+		String message = a.getMessage();
+		if(message != null){
+		    out.print(message);
+		}
+	    }
+	    out.println();
+	    out.println("\t\t  FIFO\t\t\t\t\tBANKER'S");
+	    StringBuilder line = new StringBuilder(128);
+	    int ttFIFO=0; int twFIFO=0; int ttBanker=0; int twBanker = 0; //total times and total wait times
+	    for(int i = 0; i < fifo.size(); i++){
+		Banker.Task taskFIFO = fifo.get(i);
+		Banker.Task taskBanker = banker.get(i);
+		String name = "Task " + (i+1);
+		line.setLength(0);
+		line.append('\t');
+		if(taskFIFO.isAborted()){
+		    aborted(line, name);
+		}
+		else{
+		    row(line, name, taskFIFO.getTotalTime(), taskFIFO.getWaitTime());
+		    ttFIFO += taskFIFO.getTotalTime();
+		    twFIFO += taskFIFO.getWaitTime();
+		}
+		line.append("\t\t");
+		if(taskBanker.isAborted()){
+		    aborted(line, name);
+		}
+		else{
+		    row(line, name, taskBanker.getTotalTime(), taskBanker.getWaitTime());
+		    ttBanker += taskBanker.getTotalTime();
+		    twBanker += taskBanker.getWaitTime();
+		}
+		out.println(line);
+	    }
+	    line.setLength(0);
+	    line.append('\t');
+	    row(line, "Total", ttFIFO, twFIFO);
+	    line.append("\t\t");
+	    row(line, "Total", ttBanker, twBanker);
+	    out.println(line);
+	}
+
+	/* same as printf("%-6s      %-14s", name, "aborted") */
+	private static void aborted(StringBuilder line, String name){
+	    pad(line.append(name), 6 - name.length());
+	    line.append("      ");
+	    pad(line.append("aborted"), 7);
+	}
+
+	/* same as printf("%-6s      %-3d   %-3d   %.0f%s", name, totalTime, waitTime, waitPercent, "%") */
+	private static void row(StringBuilder line, String name, int totalTime, int waitTime){
+	    pad(line.append(name), 6 - name.length());
+	    line.append("      ");
+	    int start = line.length();
+	    pad(line.append(totalTime), 3 - (line.length() - start));
+	    line.append("   ");
+	    start = line.length();
+	    pad(line.append(waitTime), 3 - (line.length() - start));
+	    line.append("   ");
+	    float wait = waitPercent(waitTime, totalTime);
+	    if(Float.isNaN(wait) || Float.isInfinite(wait)){
+		line.append(String.format("%.0f", wait));
+	    }
+	    else{
+		line.append(Math.round((double)wait)); //the float is a tie only at an exact .5, which both round up
+	    }
+	    line.append('%');
+	}
+
+	private static void pad(StringBuilder line, int spaces){
+	    for(int k = 0; k < spaces; k++){
+		line.append(' ');
+	    }
+	}
+    }//end_TextReport_class
+
+    /* one row per task and algorithm, a total row per algorithm, then after an empty line one row per abort */
+    static class CsvReport extends Report {
+	public void write(PrintWriter out, String input, ArrayList<Banker.Task> fifo, ArrayList<Banker.Task> banker,
+			  ArrayList<AbortNotice> aborts){
+	    StringBuilder line = new StringBuilder(128);
+	    out.println("algorithm,task,status,total_time,wait_time,wait_percent");
+	    writeTasks(out, line, "FIFO", fifo);
+	    writeTasks(out, line, "Banker", banker);
+	    out.println();
+	    out.println("algorithm,cycle,task,reason,resource,units,limit");
+	    for(AbortNotice a : aborts){
+		line.setLength(0);
+		line.append(a.getAlgorithm()).append(',').append(a.getCycle()).append(',').append(a.getTaskNum()).append(',')
+		    .append(a.getReasonName()).append(',').append(a.getResourceType()).append(',').append(a.getUnits()).append(',')
+		    .append(a.getLimit());
+		out.println(line);
+	    }
+	}
+
+	private static void writeTasks(PrintWriter out, StringBuilder line, String algorithm, ArrayList<Banker.Task> tasks){
+	    int totalTime = 0; int waitTime = 0;
+	    for(Banker.Task t : tasks){
+		line.setLength(0);
+		line.append(algorithm).append(',').append(t.getTaskNum());
+		if(t.isAborted()){
+		    line.append(",aborted,,,");
+		}
+		else{
+		    line.append(",finished,").append(t.getTotalTime()).append(',').append(t.getWaitTime()).append(',');
+		    percent(line, t.getWaitTime(), t.getTotalTime());
+		    totalTime += t.getTotalTime();
+		    waitTime += t.getWaitTime();
+		}
+		out.println(line);
+	    }
+	    line.setLength(0);
+	    line.append(algorithm).append(",total,,").append(totalTime).append(',').append(waitTime).append(',');
+	    percent(line, waitTime, totalTime);
+	    out.println(line);
+	}
+
+	/* empty when there is no time to divide by */
+	private static void percent(StringBuilder line, int waitTime, int totalTime){
+	    if(totalTime > 0){
+		twoDecimals(line, waitPercent(waitTime, totalTime));
+	    }
+	}
+    }//end_CsvReport_class
+
+    /* one object per input with the tasks and totals of each algorithm and the aborts */
+    static class JsonReport extends Report {
+	public void write(PrintWriter out, String input, ArrayList<Banker.Task> fifo, ArrayList<Banker.Task> banker,
+			  ArrayList<AbortNotice> aborts){
+	    StringBuilder line = new StringBuilder(128);
+	    out.println("{\"input\": \"" + input.replace("\\", "\\\\").replace("\"", "\\\"") + "\", \"simulations\": [");
+	    writeTasks(out, line, "FIFO", fifo);
+	    out.println(",");
+	    writeTasks(out, line, "Banker", banker);
+	    out.println();
+	    out.print("], \"aborts\": [");
+	    for(int k = 0; k < aborts.size(); k++){
+		AbortNotice a = aborts.get(k);
+		line.setLength(0);
+		line.append(k == 0 ? "\n" : ",\n").append("  {\"algorithm\": \"").append(a.getAlgorithm()).append("\", \"cycle\": ")
+		    .append(a.getCycle()).append(", \"task\": ").append(a.getTaskNum()).append(", \"reason\": \"").append(a.getReasonName())
+		    .append("\", \"resource\": ").append(a.getResourceType()).append(", \"units\": ").append(a.getUnits())
+		    .append(", \"limit\": ").append(a.getLimit()).append('}');
+		out.print(line);
+	    }
+	    out.println("\n]}");
+	}
+
+	private static void writeTasks(PrintWriter out, StringBuilder line, String algorithm, ArrayList<Banker.Task> tasks){
+	    out.print("  {\"algorithm\": \"" + algorithm + "\", \"tasks\": [");
+	    int totalTime = 0; int waitTime = 0;
+	    for(int k = 0; k < tasks.size(); k++){
+		Banker.Task t = tasks.get(k);
+		line.setLength(0);
+		line.append(k == 0 ? "\n" : ",\n").append("    {\"task\": ").append(t.getTaskNum());
+		if(t.isAborted()){
+		    line.append(", \"aborted\": true}");
+		}
+		else{
+		    line.append(", \"aborted\": false, \"totalTime\": ").append(t.getTotalTime()).append(", \"waitTime\": ")
+			.append(t.getWaitTime()).append(", \"waitPercent\": ");
+		    percent(line, t.getWaitTime(), t.getTotalTime());
+		    line.append('}');
+		    totalTime += t.getTotalTime();
+		    waitTime += t.getWaitTime();
+		}
+		out.print(line);
+	    }
+	    line.setLength(0);
+	    line.append("],\n   \"total\": {\"totalTime\": ").append(totalTime).append(", \"waitTime\": ").append(waitTime)
+		.append(", \"waitPercent\": ");
+	    percent(line, waitTime, totalTime);
+	    line.append("}}");
+	    out.print(line);
+	}
+
+	/* null when there is no time to divide by */
+	private static void percent(StringBuilder line, int waitTime, int totalTime){
+	    if(totalTime > 0){
+		twoDecimals(line, waitPercent(waitTime, totalTime));
+	    }
+	    else{
+		line.append("null");
+	    }
+	}
+    }//end_JsonReport_class
+}//end_Report_class
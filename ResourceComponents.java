@@ -0,0 +1,220 @@
+import java.util.Arrays;
+
+/**
+ * Description: Groups of tasks that never share a resource type, found before a simulation.
+ * Tasks and resource types are the two sides of a bipartite graph with an edge between a task and
+ * every resource type it claims (initiate with a claim above 0), requests or releases, as found by
+ * the TaskAnalysis of the input. The connected
+ * components of the graph (found with union-find) can be simulated on their own by the Banker's
+ * algorithm: a task only waits for the units of its own resource types, and a state is safe iff the
+ * state of every component is (see Banker.BankerByComponent). The simulation of every component keeps
+ * a Timeline of when it found requests safe and when its running tasks were in an unsafe state, which
+ * tells if the components really ran on their own (see independent).
+ *
+ * Components are numbered 0 to getCount()-1 in the order of their lowest task number, and the
+ * tasks of a component are listed in task number order.
+ */
+public class ResourceComponents {
+    private int[] parent; //union-find forest, tasks are 0 to numOfTasks-1, resource type r is numOfTasks+r-1
+    private int[] component; //component[t-1] is the component of task t
+    private int[][] members; //task numbers of every component
+
+    /*
+     *Class constructor, finds the components of the tasks
+     *@param: analysis: analysis of every task of the input
+     *@param: numOfResources: number of resource types of the input
+     */
+    public ResourceComponents(TaskAnalysis analysis, int numOfResources){
+	int numOfTasks = analysis.getNumOfTasks();
+	parent = new int[numOfTasks + numOfResources];
+	for(int v = 0; v < parent.length; v++){
+	    parent[v] = v;
+	}
+	for(int t = 1; t <= numOfTasks; t++){
+	    for(int r : analysis.getResourcesUsed(t)){
+		union(t-1, numOfTasks + r-1);
+	    }
+	}
+
+	//number the components by their lowest task
+	component = new int[numOfTasks];
+	int[] numbering = new int[parent.length];
+	int[] sizes = new int[numOfTasks];
+	int count = 0;
+	for(int t = 0; t < numOfTasks; t++){
+	    int root = find(t);
+	    if(numbering[root] == 0){
+		numbering[root] = ++count;
+	    }
+	    component[t] = numbering[root] - 1;
+	    sizes[component[t]]++;
+	}
+	members = new int[count][];
+	for(int c = 0; c < count; c++){
+	    members[c] = new int[sizes[c]];
+	    sizes[c] = 0;
+	}
+	for(int t = 0; t < numOfTasks; t++){
+	    int c = component[t];
+	    members[c][sizes[c]++] = t+1;
+	}
+	parent = null;
+    }
+
+    private int find(int v){
+	while(parent[v] != v){
+	    parent[v] = parent[parent[v]]; //path halving
+	    v = parent[v];
+	}
+	return v;
+    }
+
+    private void union(int a, int b){
+	int ra = find(a);
+	int rb = find(b);
+	if(ra != rb){
+	    parent[Math.max(ra, rb)] = Math.min(ra, rb);
+	}
+    }
+
+    /* getters */
+    public int getCount(){
+	return this.members.length;
+    }
+    /* component of task t */
+    public int getComponent(int taskNum){
+	return this.component[taskNum-1];
+    }
+    /* task numbers of component c, in increasing order */
+    public int[] getTasks(int c){
+	return this.members[c];
+    }
+
+    /*
+     *Whether the components ran on their own: a request of one component found safe in a cycle in which
+     *another component may have been in an unsafe state wouldn't have been granted in the simulation of
+     *the whole input
+     *@param: timelines: timelines of the simulations of the components, after they ended
+     */
+    public static boolean independent(Timeline[] timelines){
+	//unsafe intervals of every component, [starts[k], ends[k]]
+	int count = 0;
+	for(Timeline line : timelines){
+	    count += line.numOfIntervals();
+	}
+	int[] starts = new int[count];
+	int[] ends = new int[count];
+	count = 0;
+	for(Timeline line : timelines){
+	    for(int k = 0; k < line.numOfIntervals(); k++){
+		starts[count] = line.from[k];
+		ends[count++] = line.to(k);
+	    }
+	}
+	if(count == 0){
+	    return true;
+	}
+	Arrays.sort(starts);
+	Arrays.sort(ends);
+	for(Timeline line : timelines){
+	    for(int k = 0; k < line.numOfSafe; k++){
+		int cycle = line.safe[k];
+		int covering = upperBound(starts, cycle) - lowerBound(ends, cycle); //intervals with start <= cycle <= end
+		if(covering > (line.isUnsafeIn(cycle) ? 1 : 0)){
+		    return false;
+		}
+	    }
+	}
+	return true;
+    }
+
+    /* number of values in the sorted array below value */
+    private static int lowerBound(int[] sorted, int value){
+	int low = 0;
+	int high = sorted.length;
+	while(low < high){
+	    int mid = (low + high) >>> 1;
+	    if(sorted[mid] < value){
+		low = mid + 1;
+	    }
+	    else{
+		high = mid;
+	    }
+	}
+	return low;
+    }
+    /* number of values in the sorted array up to value */
+    private static int upperBound(int[] sorted, int value){
+	return (value == Integer.MAX_VALUE) ? sorted.length : lowerBound(sorted, value + 1);
+    }
+
+    /**
+     * Cycles in which the Banker's simulation of one component found a request safe, and intervals of
+     * cycles in which its running tasks were in an unsafe state at some point (both in increasing order)
+     */
+    public static class Timeline {
+	private int[] safe = new int[16];
+	private int numOfSafe = 0;
+	private int[] from = new int[4]; //unsafe from cycle from[k] to cycle to[k]
+	private int[] to = new int[4];
+	private int numOfClosed = 0;
+	private int openFrom = -1; //first cycle of the current unsafe interval, -1 while the state is safe
+
+	/* a request was found safe in this cycle */
+	public void safe(int cycle){
+	    if(numOfSafe > 0 && safe[numOfSafe-1] == cycle){
+		return;
+	    }
+	    if(numOfSafe == safe.length){
+		safe = Arrays.copyOf(safe, numOfSafe*2);
+	    }
+	    safe[numOfSafe++] = cycle;
+	}
+	/* the running tasks are in an unsafe state in this cycle */
+	public void unsafe(int cycle){
+	    if(openFrom < 0){
+		openFrom = cycle;
+	    }
+	}
+	public boolean isUnsafe(){
+	    return openFrom >= 0;
+	}
+	/* the state is safe again, it was unsafe up to the cycle before this one */
+	public void safeAgain(int cycle){
+	    if(numOfClosed+1 == to.length){ //keeps room for the open interval
+		from = Arrays.copyOf(from, to.length*2);
+		to = Arrays.copyOf(to, to.length*2);
+	    }
+	    from[numOfClosed] = openFrom;
+	    to[numOfClosed++] = cycle - 1;
+	    openFrom = -1;
+	}
+
+	/* intervals, the last one has no end if the simulation ended in an unsafe state */
+	private int numOfIntervals(){
+	    if(openFrom >= 0){
+		from[numOfClosed] = openFrom;
+	    }
+	    return numOfClosed + (openFrom >= 0 ? 1 : 0);
+	}
+	private int to(int k){
+	    return (k < numOfClosed) ? to[k] : Integer.MAX_VALUE;
+	}
+	/* whether this component was unsafe at some point of the cycle */
+	private boolean isUnsafeIn(int cycle){
+	    int n = numOfIntervals();
+	    int low = 0;
+	    int high = n;
+	    while(low < high){ //first interval ending at or after cycle
+		int mid = (low + high) >>> 1;
+		if(to(mid) < cycle){
+		    low = mid + 1;
+		}
+		else{
+		    high = mid;
+		}
+	    }
+	    return low < n && from[low] <= cycle;
+	}
+    }//end_Timeline_class
+}//end_ResourceComponents_class
@@ -0,0 +1,108 @@
+/**
+ * Description: Resource state of one simulation kept in primitive arrays.
+ * Allocations and claims are n x m matrices stored row by row in flat int arrays
+ * (the row of task t+1 starts at t*numOfResources), the available units and the
+ * units released during the current cycle are int vectors. Nothing is boxed, so
+ * granting, releasing and checking requests doesn't allocate.
+ *
+ * Task numbers and resource types start at 1, like in the input file.
+ */
+public class ResourceState {
+    private int numOfTasks;
+    private int numOfResources;
+    private int[] allocated; //allocated[(t-1)*numOfResources + (r-1)] = units of resource r held by task t
+    private int[] claims; //the tasks' initial claims, same layout as allocated
+    private int[] available; //units of each resource type that can be granted this cycle
+    private int[] released; //units released this cycle, available next cycle
+
+    /* Class constructor */
+    public ResourceState(int tasks, int resources){
+	this.numOfTasks = tasks;
+	this.numOfResources = resources;
+	this.allocated = new int[tasks*resources];
+	this.claims = new int[tasks*resources];
+	this.available = new int[resources];
+	this.released = new int[resources];
+    }
+    /* Class constructor for copying a state, the copy shares no arrays with s */
+    public ResourceState(ResourceState s){
+	this.numOfTasks = s.numOfTasks;
+	this.numOfResources = s.numOfResources;
+	this.allocated = s.allocated.clone();
+	this.claims = s.claims.clone();
+	this.available = s.available.clone();
+	this.released = s.released.clone();
+    }
+
+    /* getters, setters */
+    public int getNumOfTasks(){
+	return this.numOfTasks;
+    }
+    public int getNumOfResources(){
+	return this.numOfResources;
+    }
+    public int getAvailable(int resourceType){
+	return this.available[resourceType-1];
+    }
+    public void setAvailable(int resourceType, int units){
+	this.available[resourceType-1] = units;
+    }
+    public int getReleased(int resourceType){
+	return this.released[resourceType-1];
+    }
+    public int getAllocated(int taskNum, int resourceType){
+	return this.allocated[(taskNum-1)*numOfResources + resourceType-1];
+    }
+    public int getClaim(int taskNum, int resourceType){
+	return this.claims[(taskNum-1)*numOfResources + resourceType-1];
+    }
+    public void setClaim(int taskNum, int resourceType, int units){
+	this.claims[(taskNum-1)*numOfResources + resourceType-1] = units;
+    }
+    /* additional units of resourceType the task may still request */
+    public int getNeed(int taskNum, int resourceType){
+	int index = (taskNum-1)*numOfResources + resourceType-1;
+	return this.claims[index] - this.allocated[index];
+    }
+
+    /* grant units of resourceType to the task, they are taken out of the available units */
+    public void allocate(int taskNum, int resourceType, int units){
+	this.allocated[(taskNum-1)*numOfResources + resourceType-1] += units;
+	this.available[resourceType-1] -= units;
+    }
+    /* undo allocate: give the units back to the available units right away */
+    public void deallocate(int taskNum, int resourceType, int units){
+	this.allocated[(taskNum-1)*numOfResources + resourceType-1] -= units;
+	this.available[resourceType-1] += units;
+    }
+    /* task releases units of resourceType, they are available next cycle */
+    public void release(int taskNum, int resourceType, int units){
+	this.allocated[(taskNum-1)*numOfResources + resourceType-1] -= units;
+	this.released[resourceType-1] += units;
+    }
+    /* task releases everything it holds (task is aborted), the units are available next cycle */
+    public void releaseAll(int taskNum){
+	int row = (taskNum-1)*numOfResources;
+	for(int r = 0; r < numOfResources; r++){
+	    this.released[r] += this.allocated[row+r];
+	    this.allocated[row+r] = 0;
+	}
+    }
+    /* end of cycle: units released this cycle become available */
+    public void commitReleased(){
+	for(int r = 0; r < numOfResources; r++){
+	    this.available[r] += this.released[r];
+	    this.released[r] = 0;
+	}
+    }
+
+    /* add the units the task holds to units (indexed from 0) */
+    public void addAllocatedTo(int taskNum, int[] units, RowKernel kernel){
+	kernel.add(units, this.allocated, (taskNum-1)*numOfResources, numOfResources);
+    }
+
+    /* copy of the available units, indexed from 0 */
+    public int[] copyAvailable(){
+	return this.available.clone();
+    }
+}//end_ResourceState_class
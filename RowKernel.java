@@ -0,0 +1,53 @@
+/**
+ * Description: Dense operations on rows of resource vectors used by the safety checks:
+ * "does the need row fit in the work vector" and "add a row of allocations to a vector".
+ * This class is the scalar version. When the JDK Vector API module is present
+ * (java --add-modules jdk.incubator.vector) and vector/VectorRowKernel.java has been compiled,
+ * get() returns the SIMD version instead; -Dbanker.vector=false keeps the scalar one.
+ *
+ * Rows are given as an array and the offset of their first element, so flat n x m matrices
+ * (SafetyChecker's need, ResourceState's allocations) can be used without copying.
+ */
+public class RowKernel {
+    private static final RowKernel INSTANCE = load();
+
+    /* kernel to use, the SIMD one if it could be loaded */
+    public static RowKernel get(){
+	return INSTANCE;
+    }
+
+    /* name of the kernel, for the benchmarks */
+    public String getName(){
+	return "scalar";
+    }
+
+    /* true if row[offset+r] <= work[r] for every r < length */
+    public boolean fits(int[] row, int offset, int[] work, int length){
+	for(int r = 0; r < length; r++){
+	    if(row[offset+r] > work[r]){
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /* sums[r] += row[offset+r] for every r < length */
+    public void add(int[] sums, int[] row, int offset, int length){
+	for(int r = 0; r < length; r++){
+	    sums[r] += row[offset+r];
+	}
+    }
+
+    private static RowKernel load(){
+	if(System.getProperty("banker.vector", "true").equals("false")
+	   || !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()){
+	    return new RowKernel();
+	}
+	try{
+	    return (RowKernel)Class.forName("VectorRowKernel").getDeclaredConstructor().newInstance();
+	}
+	catch(ReflectiveOperationException | LinkageError e){ //not compiled, or the module can't be used
+	    return new RowKernel();
+	}
+    }
+}//end_RowKernel_class
@@ -0,0 +1,117 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Description: Bounded LRU cache of the answers of SafetyChecker.isSafeAfter for the Banker's
+ * blocked tasks, which are checked again every cycle with the same request. An answer is keyed
+ * by the request (task, resource type, units), the version of the checker (changed by every claim,
+ * grant, release and change of the running tasks) and the available vector, looked up by a hash
+ * of its units and then compared in full, so a hit is always the answer the checker would give.
+ * The cache holds as many answers as fit in its memory budget (-Dbanker.safetyCacheBytes=n).
+ */
+public class SafetyCache {
+    private static final int ENTRY_OVERHEAD = 96; //map entry, key object and array header, in bytes
+
+    private final int numOfResources;
+    private final int maxEntries;
+    private final LinkedHashMap<Key,Boolean> answers;
+    private final Key probe; //key of the last lookup, copied when its answer is stored
+    private long hits = 0;
+    private long misses = 0;
+
+    /*
+     *Class constructor
+     *@param: numOfResources: length of the available vectors
+     *@param: budgetBytes: memory the cached answers may take
+     */
+    public SafetyCache(int numOfResources, long budgetBytes){
+	this.numOfResources = numOfResources;
+	long entryBytes = ENTRY_OVERHEAD + 4L*numOfResources;
+	this.maxEntries = (int)Math.max(1, Math.min(Integer.MAX_VALUE - 1, budgetBytes / entryBytes));
+	this.answers = new LinkedHashMap<Key,Boolean>(16, 0.75f, true){
+	    protected boolean removeEldestEntry(Map.Entry<Key,Boolean> eldest){
+		return size() > maxEntries;
+	    }
+	};
+	this.probe = new Key(new int[numOfResources]);
+    }
+
+    /*
+     *Looks up the answer of a safety check
+     *@param: version: SafetyChecker.getVersion() of the state checked
+     *@param: state: resource state whose available units are checked
+     *@param: taskNum, resourceType, units: request checked
+     *return: the cached answer, null if there is none (store it with put)
+     */
+    public Boolean get(long version, ResourceState state, int taskNum, int resourceType, int units){
+	Key k = probe;
+	k.version = version;
+	k.taskNum = taskNum;
+	k.resourceType = resourceType;
+	k.units = units;
+	long h = version*31 + taskNum;
+	h = h*31 + resourceType;
+	h = h*31 + units;
+	for(int r = 0; r < numOfResources; r++){
+	    int avail = state.getAvailable(r+1);
+	    k.available[r] = avail;
+	    h = h*31 + avail;
+	}
+	k.hash = (int)(h ^ (h >>> 32));
+	Boolean answer = answers.get(k);
+	if(answer != null){
+	    hits++;
+	}
+	else{
+	    misses++;
+	}
+	return answer;
+    }
+
+    /* stores the answer of the check last looked up with get */
+    public void put(boolean safe){
+	Key k = new Key(Arrays.copyOf(probe.available, numOfResources));
+	k.version = probe.version;
+	k.taskNum = probe.taskNum;
+	k.resourceType = probe.resourceType;
+	k.units = probe.units;
+	k.hash = probe.hash;
+	answers.put(k, safe);
+    }
+
+    /* getters */
+    public long getHits(){
+	return this.hits;
+    }
+    public long getMisses(){
+	return this.misses;
+    }
+    public int getMaxEntries(){
+	return this.maxEntries;
+    }
+
+    private static class Key {
+	long version;
+	int taskNum, resourceType, units;
+	final int[] available;
+	int hash;
+
+	Key(int[] available){
+	    this.available = available;
+	}
+
+	public int hashCode(){
+	    return hash;
+	}
+
+	public boolean equals(Object o){
+	    if(!(o instanceof Key)){
+		return false;
+	    }
+	    Key k = (Key)o;
+	    return hash == k.hash && version == k.version && taskNum == k.taskNum && resourceType == k.resourceType
+		&& units == k.units && Arrays.equals(available, k.available);
+	}
+    }
+}//end_SafetyCache_class
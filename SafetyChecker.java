@@ -0,0 +1,409 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Description: Incremental safety checker used by the Banker's algorithm.
+ * Instead of rebuilding the need matrix on every call (see Banker.isSafe), the checker
+ * keeps the need matrix across cycles and reads allocations and available units straight
+ * from the simulation's ResourceState. The simulation tells it about every claim, grant
+ * and release (updateNeed) and about every task entering or leaving the running tasks.
+ *
+ * For every resource type the tasks are kept sorted by their need of that resource.
+ * A safety query then walks each sorted index at most once: whenever the work vector of
+ * a resource grows, the pointer into that index is advanced and every task passed counts
+ * one more resource whose need can be met. A task whose count reaches numOfResources can
+ * finish and is put on a work queue, so one query costs O(n*m) instead of O(n^2*m).
+ *
+ * With very many running tasks (at least parallelThreshold, and more than one core) the check
+ * is done in rounds instead: every round scans the tasks not finished yet in parallel over
+ * partitions, and the releases of all tasks found to be finishable in that round are applied
+ * together. That is valid because releases only increase the work vector, so a task that can
+ * finish stays able to finish; the answer is the same as the sequential one.
+ *
+ * Between two checks usually only a few units of one task change, so the order in which the tasks
+ * finished in the last safe check mostly still works. A check first walks the tasks in that order
+ * (one pass over the need rows, stopping at the first task that can't finish) and only searches
+ * when it fails; the order found by a successful search is kept for the next check. Requests of
+ * blocked tasks being retried are mostly refused, so their checks go straight to the search.
+ *
+ * Before both, the largest need of the active tasks for every resource is read off the top of the
+ * sorted indexes: when the available units cover it for every resource, every task can finish
+ * first and the state is safe without a walk. Tasks that terminated or were aborted are retired
+ * (their needs dropped to 0) so they don't stay on top of the indexes.
+ */
+public class SafetyChecker {
+    //smallest number of running tasks checked in parallel (-Dbanker.parallelSafetyThreshold=n), see
+    //BankerBenchmark -bench parallel. States in which tasks can only finish one after the other need
+    //many rounds, so the parallel check is kept for wide task sets
+    static int parallelThreshold = Integer.getInteger("banker.parallelSafetyThreshold", 10000);
+    private static final int PARTITION_SIZE = 2048; //tasks scanned by one fork/join leaf
+    //try the order of the last safe check first, -Dbanker.fullSafetySearch=true always searches
+    static boolean safeSequenceHint = !Boolean.getBoolean("banker.fullSafetySearch");
+    private static final int FAST_PATH_SKIPS = 16; //inactive tasks passed at the top of an index before the fast path gives up
+    private RowKernel kernel = RowKernel.get(); //row compare and add of the parallel check (scalar or SIMD)
+
+    private ResourceState state;
+    private int numOfTasks;
+    private int numOfResources;
+    private int[] need; //need[t*numOfResources + r] = claim - allocated of task t+1 for resource r+1
+    private boolean[] active; //tasks that take part in a safety check (the running tasks)
+    private int activeCount = 0;
+    private long version = 0; //changed by every update of the needs or of the active tasks (see SafetyCache)
+
+    /* per resource sorted need index: order[r][k] is the task with the k-th smallest need of resource r,
+     * position[r][t] is the index of task t in order[r] */
+    private int[][] order;
+    private int[][] position;
+
+    /* scratch space reused by every query */
+    private int[] work;
+    private int[] pointer;
+    private int[] satisfied;
+    private int[] queue;
+    private int[] remaining; //tasks not finished yet in a parallel check
+
+    /* safe sequence hint: every task, the active ones in the order they finished in the last safe check */
+    private int[] hint;
+    private int[] nextHint;
+    private long fastPathHits = 0; //checks answered by the largest needs alone
+    private long hintHits = 0;
+    private long hintMisses = 0;
+
+    /* Class constructor */
+    public SafetyChecker(ResourceState state){
+	this.state = state;
+	this.numOfTasks = state.getNumOfTasks();
+	this.numOfResources = state.getNumOfResources();
+	this.need = new int[numOfTasks*numOfResources];
+	this.active = new boolean[numOfTasks];
+	this.order = new int[numOfResources][numOfTasks];
+	this.position = new int[numOfResources][numOfTasks];
+	//build the sorted indexes by sorting (need, task) pairs packed in longs
+	long[] keys = new long[numOfTasks];
+	for(int r = 0; r < numOfResources; r++){
+	    for(int t = 0; t < numOfTasks; t++){
+		need[t*numOfResources + r] = state.getNeed(t+1, r+1);
+		keys[t] = ((long)need[t*numOfResources + r] << 32) | t;
+	    }
+	    Arrays.sort(keys);
+	    for(int k = 0; k < numOfTasks; k++){
+		int t = (int)keys[k];
+		order[r][k] = t;
+		position[r][t] = k;
+	    }
+	}
+	this.work = new int[numOfResources];
+	this.pointer = new int[numOfResources];
+	this.satisfied = new int[numOfTasks];
+	this.queue = new int[numOfTasks];
+	this.remaining = new int[numOfTasks];
+	this.hint = new int[numOfTasks];
+	this.nextHint = new int[numOfTasks];
+	for(int t = 0; t < numOfTasks; t++){
+	    hint[t] = t;
+	}
+    }
+
+    /* claim or allocation of the task changed for resourceType (task numbers and resource types start at 1) */
+    public void updateNeed(int taskNum, int resourceType){
+	version++;
+	reposition(taskNum-1, resourceType-1, state.getNeed(taskNum, resourceType));
+    }
+    public void activate(int taskNum){
+	if(!active[taskNum-1]){
+	    active[taskNum-1] = true;
+	    activeCount++;
+	    version++;
+	}
+    }
+    public void deactivate(int taskNum){
+	if(active[taskNum-1]){
+	    active[taskNum-1] = false;
+	    activeCount--;
+	    version++;
+	}
+    }
+    /* the task won't run again (terminated or aborted): it leaves the running tasks and the top of the indexes */
+    public void retire(int taskNum){
+	deactivate(taskNum);
+	for(int r = 0; r < numOfResources; r++){
+	    reposition(taskNum-1, r, 0);
+	}
+    }
+    public boolean isActive(int taskNum){
+	return this.active[taskNum-1];
+    }
+    /* same version, same needs and running tasks */
+    public long getVersion(){
+	return this.version;
+    }
+    /* checks answered by the largest needs, by the safe sequence hint, and checks that needed a search */
+    public long getFastPathHits(){
+	return this.fastPathHits;
+    }
+    public long getHintHits(){
+	return this.hintHits;
+    }
+    public long getHintMisses(){
+	return this.hintMisses;
+    }
+
+    /*
+     * Checks if the state is safe after granting units of resourceType to the task.
+     * The task takes part in the check even if it is not active (a blocked task being retried).
+     * The resource state and the checker are left unchanged.
+     *
+     *@param: taskNum: task making the request
+     *@param: resourceType: requested resource type
+     *@param: units: number of requested units
+     *return: true if state is safe, false otherwise
+     */
+    public boolean isSafeAfter(int taskNum, int resourceType, int units){
+	long lastVersion = version;
+	boolean wasActive = isActive(taskNum);
+	activate(taskNum);
+	state.allocate(taskNum, resourceType, units);
+	updateNeed(taskNum, resourceType);
+	boolean safe = check(wasActive && safeSequenceHint);
+	state.deallocate(taskNum, resourceType, units);
+	updateNeed(taskNum, resourceType);
+	if(!wasActive){
+	    deactivate(taskNum);
+	}
+	version = lastVersion; //back to the same state
+	return safe;
+    }
+
+    /*
+     * Checks if the current state is safe, only active tasks are taken into account
+     *return: true if state is safe, false otherwise
+     */
+    public boolean isSafe(){
+	return check(safeSequenceHint);
+    }
+
+    /* safety check, walking the hint first if tryHint */
+    private boolean check(boolean tryHint){
+	if(fitsLargestNeeds()){
+	    fastPathHits++;
+	    return true;
+	}
+	if(tryHint){
+	    if(followsHint()){
+		hintHits++;
+		return true;
+	    }
+	    hintMisses++;
+	}
+	if(activeCount >= parallelThreshold && ForkJoinPool.getCommonPoolParallelism() > 1){
+	    return isSafeParallel();
+	}
+	boolean safe = isSafeSequential();
+	if(safe && safeSequenceHint){
+	    repairHint();
+	}
+	return safe;
+    }
+
+    /* true if the available units of every resource cover the largest need of an active task for it */
+    private boolean fitsLargestNeeds(){
+	for(int r = 0; r < numOfResources; r++){
+	    int[] sorted = order[r];
+	    int k = numOfTasks-1;
+	    while(k >= 0 && !active[sorted[k]]){
+		if(numOfTasks-1 - k == FAST_PATH_SKIPS){
+		    return false;
+		}
+		k--;
+	    }
+	    if(k >= 0 && need[sorted[k]*numOfResources + r] > state.getAvailable(r+1)){
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /* true if every active task can finish in the order of the hint */
+    private boolean followsHint(){
+	for(int r = 0; r < numOfResources; r++){
+	    work[r] = state.getAvailable(r+1);
+	}
+	int finished = 0;
+	for(int k = 0; k < numOfTasks && finished < activeCount; k++){
+	    int t = hint[k];
+	    if(!active[t]){
+		continue;
+	    }
+	    if(!kernel.fits(need, t*numOfResources, work, numOfResources)){
+		return false;
+	    }
+	    state.addAllocatedTo(t+1, work, kernel);
+	    finished++;
+	}
+	return true;
+    }
+
+    /* the hint becomes the order in which the last sequential check finished the active tasks, then the others */
+    private void repairHint(){
+	System.arraycopy(queue, 0, nextHint, 0, activeCount);
+	int k = activeCount;
+	for(int j = 0; j < numOfTasks; j++){
+	    if(!active[hint[j]]){
+		nextHint[k++] = hint[j];
+	    }
+	}
+	int[] last = hint;
+	hint = nextHint;
+	nextHint = last;
+    }
+
+    /* safety check using the sorted need indexes */
+    public boolean isSafeSequential(){
+	for(int r = 0; r < numOfResources; r++){
+	    work[r] = state.getAvailable(r+1);
+	}
+	return search() == activeCount;
+    }
+
+    /*
+     * Lets every active task that can finish starting from the given units finish
+     *@param: units: units to start from (indexed from 0), replaced by the units once they finished
+     *return: number of tasks that finished
+     */
+    public int finishFrom(int[] units){
+	System.arraycopy(units, 0, work, 0, numOfResources);
+	int count = search();
+	System.arraycopy(work, 0, units, 0, numOfResources);
+	return count;
+    }
+
+    /* puts the active tasks that can finish with the work vector on the queue in the order they finish, returns how many */
+    private int search(){
+	int head = 0, tail = 0;
+	for(int t = 0; t < numOfTasks; t++){
+	    satisfied[t] = 0;
+	}
+	for(int r = 0; r < numOfResources; r++){
+	    pointer[r] = 0;
+	    tail = advance(r, tail);
+	}
+	//every task on the queue can finish and releases its resources
+	while(head < tail){
+	    int t = queue[head++];
+	    for(int r = 0; r < numOfResources; r++){
+		int held = state.getAllocated(t+1, r+1);
+		if(held != 0){
+		    work[r] += held;
+		    tail = advance(r, tail);
+		}
+	    }
+	}
+	return tail;
+    }
+
+    /* safety check in rounds, every round scans the remaining tasks in parallel */
+    public boolean isSafeParallel(){
+	int count = 0;
+	for(int t = 0; t < numOfTasks; t++){
+	    if(active[t]){
+		remaining[count++] = t;
+	    }
+	}
+	int[] work = state.copyAvailable();
+	boolean[] finishable = new boolean[numOfTasks];
+	while(count > 0){
+	    int[] released = new RoundScan(work, finishable, 0, count).invoke();
+	    //keep the tasks that can't finish yet
+	    int kept = 0;
+	    for(int k = 0; k < count; k++){
+		if(!finishable[remaining[k]]){
+		    remaining[kept++] = remaining[k];
+		}
+	    }
+	    if(kept == count){ //no task can finish, state is unsafe
+		return false;
+	    }
+	    count = kept;
+	    for(int r = 0; r < numOfResources; r++){
+		work[r] += released[r];
+	    }
+	}
+	return true;
+    }
+
+    /*
+     * One round of the parallel check over remaining[lo..hi): marks the tasks whose need can be met
+     * with the work vector and returns the units they hold (released when they finish)
+     */
+    private class RoundScan extends RecursiveTask<int[]> {
+	private static final long serialVersionUID = 1L;
+	private int[] work;
+	private boolean[] finishable;
+	private int lo, hi;
+
+	RoundScan(int[] work, boolean[] finishable, int lo, int hi){
+	    this.work = work;
+	    this.finishable = finishable;
+	    this.lo = lo;
+	    this.hi = hi;
+	}
+
+	protected int[] compute(){
+	    if(hi - lo > PARTITION_SIZE){
+		int mid = (lo + hi) >>> 1;
+		RoundScan left = new RoundScan(work, finishable, lo, mid);
+		left.fork();
+		int[] released = new RoundScan(work, finishable, mid, hi).compute();
+		int[] other = left.join();
+		for(int r = 0; r < numOfResources; r++){
+		    released[r] += other[r];
+		}
+		return released;
+	    }
+	    int[] released = new int[numOfResources];
+	    for(int k = lo; k < hi; k++){
+		int t = remaining[k];
+		if(kernel.fits(need, t*numOfResources, work, numOfResources)){
+		    finishable[t] = true;
+		    state.addAllocatedTo(t+1, released, kernel);
+		}
+	    }
+	    return released;
+	}
+    }//end_RoundScan_class
+
+    /* move the pointer of resource r past every task whose need of r can be met, returns the new queue tail */
+    private int advance(int r, int tail){
+	int[] sorted = order[r];
+	int k = pointer[r];
+	while(k < numOfTasks && need[sorted[k]*numOfResources + r] <= work[r]){
+	    int t = sorted[k++];
+	    if(active[t] && ++satisfied[t] == numOfResources){
+		queue[tail++] = t;
+	    }
+	}
+	pointer[r] = k;
+	return tail;
+    }
+
+    /* set a new need value and move the task to its place in the sorted index of r */
+    private void reposition(int t, int r, int value){
+	int[] sorted = order[r];
+	int[] pos = position[r];
+	int k = pos[t];
+	need[t*numOfResources + r] = value;
+	while(k > 0 && need[sorted[k-1]*numOfResources + r] > value){
+	    sorted[k] = sorted[k-1];
+	    pos[sorted[k]] = k;
+	    k--;
+	}
+	while(k < numOfTasks-1 && need[sorted[k+1]*numOfResources + r] < value){
+	    sorted[k] = sorted[k+1];
+	    pos[sorted[k]] = k;
+	    k++;
+	}
+	sorted[k] = t;
+	pos[t] = k;
+    }
+}//end_SafetyChecker_class
@@ -0,0 +1,268 @@
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Description: Metrics of one simulation (FIFO or Banker) of one input.
+ * The simulation counts grants, blocks, releases and aborts as they happen and calls
+ * endCycle at the end of every cycle it simulates; safetyCheck records the latency of
+ * every safety check. Metrics are only collected when -Dbanker.metrics=json or csv is
+ * given, otherwise the simulations have no metrics object and skip every call.
+ *
+ * Cycles skipped by the event clock are not listed in the per-cycle table, but they count
+ * for the time averages: nothing changes in them, so the blocked queue depth and units
+ * held are those of the last simulated cycle.
+ */
+public class SimulationMetrics {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private String algorithm;
+    private int numOfResources;
+    private int[] unitsPresent; //units of each resource type, indexed from 0
+
+    /* per simulated cycle table, one column per array */
+    private int[] cycles = new int[INITIAL_CAPACITY];
+    private int[] grants = new int[INITIAL_CAPACITY];
+    private int[] blocks = new int[INITIAL_CAPACITY];
+    private int[] releases = new int[INITIAL_CAPACITY];
+    private int[] aborts = new int[INITIAL_CAPACITY];
+    private int[] blocked = new int[INITIAL_CAPACITY]; //blocked queue depth at the end of the cycle
+    private int size = 0;
+
+    /* counts of the current cycle */
+    private int cycleGrants, cycleBlocks, cycleReleases, cycleAborts;
+
+    /* time averages: sums over all cycles (simulated or skipped) */
+    private int lastCycle = 0;
+    private int lastBlocked = 0;
+    private int[] lastHeld;
+    private long[] heldSum; //units held summed over cycles, per resource type
+    private long blockedSum = 0;
+    private int maxBlocked = 0;
+
+    private LatencyHistogram safetyLatency = new LatencyHistogram();
+    private long cacheHits = 0; //safety checks answered by a SafetyCache
+    private long cacheMisses = 0;
+    private long fastPathHits = 0; //safety checks answered by the largest needs (SafetyChecker)
+    private long hintHits = 0; //safety checks answered by the safe sequence hint
+    private long hintMisses = 0;
+
+    /* Class constructor, called before the simulation starts when every unit is available */
+    public SimulationMetrics(String algorithm, ResourceState state){
+	this.algorithm = algorithm;
+	this.numOfResources = state.getNumOfResources();
+	this.unitsPresent = state.copyAvailable();
+	this.lastHeld = new int[numOfResources];
+	this.heldSum = new long[numOfResources];
+    }
+
+    /* events of the current cycle */
+    public void grant(){
+	cycleGrants++;
+    }
+    public void block(){
+	cycleBlocks++;
+    }
+    public void release(){
+	cycleReleases++;
+    }
+    public void abort(){
+	cycleAborts++;
+    }
+    public void safetyCheck(long nanos){
+	safetyLatency.record(nanos);
+    }
+    /* totals of the safety checks answered by the largest needs and by the safe sequence hint (SafetyChecker), and of the hint misses */
+    public void setSafetyCheckCounts(long fastPath, long hits, long misses){
+	fastPathHits = fastPath;
+	hintHits = hits;
+	hintMisses = misses;
+    }
+    public void safetyCacheLookup(boolean hit){
+	if(hit){
+	    cacheHits++;
+	}
+	else{
+	    cacheMisses++;
+	}
+    }
+
+    /*
+     *Ends a simulated cycle: stores its counts and adds it (and the cycles skipped before it) to the time averages
+     *@param: cycle: number of the cycle
+     *@param: state: resource state after the units released this cycle were made available
+     *@param: blockedTasks: number of blocked tasks
+     */
+    public void endCycle(int cycle, ResourceState state, int blockedTasks){
+	if(size == cycles.length){
+	    int capacity = size*2;
+	    cycles = Arrays.copyOf(cycles, capacity);
+	    grants = Arrays.copyOf(grants, capacity);
+	    blocks = Arrays.copyOf(blocks, capacity);
+	    releases = Arrays.copyOf(releases, capacity);
+	    aborts = Arrays.copyOf(aborts, capacity);
+	    blocked = Arrays.copyOf(blocked, capacity);
+	}
+	cycles[size] = cycle;
+	grants[size] = cycleGrants;
+	blocks[size] = cycleBlocks;
+	releases[size] = cycleReleases;
+	aborts[size] = cycleAborts;
+	blocked[size] = blockedTasks;
+	size++;
+	cycleGrants = cycleBlocks = cycleReleases = cycleAborts = 0;
+
+	int skipped = cycle - lastCycle - 1;
+	blockedSum += (long)lastBlocked*skipped + blockedTasks;
+	for(int r = 0; r < numOfResources; r++){
+	    int held = unitsPresent[r] - state.getAvailable(r+1);
+	    heldSum[r] += (long)lastHeld[r]*skipped + held;
+	    lastHeld[r] = held;
+	}
+	lastCycle = cycle;
+	lastBlocked = blockedTasks;
+	maxBlocked = Math.max(maxBlocked, blockedTasks);
+    }
+
+    /* getters */
+    public String getAlgorithm(){
+	return this.algorithm;
+    }
+    public int getCycles(){
+	return this.lastCycle;
+    }
+    public LatencyHistogram getSafetyLatency(){
+	return this.safetyLatency;
+    }
+    public double getMeanBlocked(){
+	return lastCycle == 0 ? 0 : (double)blockedSum / lastCycle;
+    }
+    /* share of the units of resourceType held by tasks, averaged over all cycles */
+    public double getUtilization(int resourceType){
+	int r = resourceType-1;
+	return (lastCycle == 0 || unitsPresent[r] == 0) ? 0 : (double)heldSum[r] / ((double)lastCycle * unitsPresent[r]);
+    }
+    private long total(int[] column){
+	long total = 0;
+	for(int k = 0; k < size; k++){
+	    total += column[k];
+	}
+	return total;
+    }
+
+    /*
+     *Writes the metrics of the simulations as one JSON object
+     *@param: out: where to write
+     *@param: input: name of the input file
+     *@param: metrics: metrics of each simulation of the input
+     */
+    public static void writeJson(PrintWriter out, String input, SimulationMetrics... metrics){
+	out.print("{\"input\": \"" + input.replace("\\", "\\\\").replace("\"", "\\\"") + "\", \"simulations\": [");
+	for(int s = 0; s < metrics.length; s++){
+	    SimulationMetrics m = metrics[s];
+	    LatencyHistogram h = m.safetyLatency;
+	    out.print(s == 0 ? "\n" : ",\n");
+	    out.printf(Locale.ROOT, "  {\"algorithm\": \"%s\", \"cycles\": %d, \"simulatedCycles\": %d,%n", m.algorithm, m.lastCycle, m.size);
+	    out.printf(Locale.ROOT, "   \"totals\": {\"grants\": %d, \"blocks\": %d, \"releases\": %d, \"aborts\": %d},%n",
+		       m.total(m.grants), m.total(m.blocks), m.total(m.releases), m.total(m.aborts));
+	    out.printf(Locale.ROOT, "   \"blockedQueue\": {\"max\": %d, \"mean\": %.4f},%n", m.maxBlocked, m.getMeanBlocked());
+	    out.print("   \"utilization\": [");
+	    for(int r = 1; r <= m.numOfResources; r++){
+		out.printf(Locale.ROOT, "%s%.4f", (r == 1) ? "" : ", ", m.getUtilization(r));
+	    }
+	    out.println("],");
+	    out.printf(Locale.ROOT, "   \"isSafe\": {\"count\": %d, \"minNs\": %d, \"meanNs\": %.1f, \"p50Ns\": %d, \"p90Ns\": %d, \"p99Ns\": %d, \"maxNs\": %d, \"buckets\": [",
+		       h.getCount(), h.getMin(), h.getMean(), h.getPercentile(50), h.getPercentile(90), h.getPercentile(99), h.getMax());
+	    boolean first = true;
+	    for(int b = 0; b < h.getNumOfBuckets(); b++){
+		if(h.getBucketCount(b) > 0){
+		    out.printf(Locale.ROOT, "%s{\"fromNs\": %d, \"toNs\": %d, \"count\": %d}", first ? "" : ", ",
+			       LatencyHistogram.bucketFrom(b), LatencyHistogram.bucketTo(b), h.getBucketCount(b));
+		    first = false;
+		}
+	    }
+	    out.println("]},");
+	    if(m.fastPathHits > 0){
+		out.printf(Locale.ROOT, "   \"safetyFastPath\": %d,%n", m.fastPathHits);
+	    }
+	    if(m.hintHits + m.hintMisses > 0){
+		out.printf(Locale.ROOT, "   \"safetyHint\": {\"hits\": %d, \"misses\": %d, \"hitRate\": %.4f},%n", m.hintHits, m.hintMisses,
+			   (double)m.hintHits / (m.hintHits + m.hintMisses));
+	    }
+	    if(m.cacheHits + m.cacheMisses > 0){
+		out.printf(Locale.ROOT, "   \"safetyCache\": {\"hits\": %d, \"misses\": %d},%n", m.cacheHits, m.cacheMisses);
+	    }
+	    out.print("   \"perCycle\": {");
+	    writeJsonColumn(out, "cycle", m.cycles, m.size);
+	    out.print(", ");
+	    writeJsonColumn(out, "grants", m.grants, m.size);
+	    out.print(", ");
+	    writeJsonColumn(out, "blocks", m.blocks, m.size);
+	    out.print(", ");
+	    writeJsonColumn(out, "releases", m.releases, m.size);
+	    out.print(", ");
+	    writeJsonColumn(out, "aborts", m.aborts, m.size);
+	    out.print(", ");
+	    writeJsonColumn(out, "blocked", m.blocked, m.size);
+	    out.print("}}");
+	}
+	out.println("\n]}");
+    }
+
+    private static void writeJsonColumn(PrintWriter out, String name, int[] column, int size){
+	out.print("\"" + name + "\": [");
+	for(int k = 0; k < size; k++){
+	    if(k > 0){
+		out.print(',');
+	    }
+	    out.print(column[k]);
+	}
+	out.print(']');
+    }
+
+    /*
+     *Writes the metrics of the simulations as CSV: the per-cycle table, an empty line, then
+     *one algorithm,metric,value row per summary value
+     *@param: out: where to write
+     *@param: metrics: metrics of each simulation of the input
+     */
+    public static void writeCsv(PrintWriter out, SimulationMetrics... metrics){
+	out.println("algorithm,cycle,grants,blocks,releases,aborts,blocked");
+	for(SimulationMetrics m : metrics){
+	    for(int k = 0; k < m.size; k++){
+		out.printf(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%d%n", m.algorithm, m.cycles[k], m.grants[k], m.blocks[k], m.releases[k], m.aborts[k], m.blocked[k]);
+	    }
+	}
+	out.println();
+	out.println("algorithm,metric,value");
+	for(SimulationMetrics m : metrics){
+	    LatencyHistogram h = m.safetyLatency;
+	    String a = m.algorithm;
+	    out.printf(Locale.ROOT, "%s,cycles,%d%n%s,simulated_cycles,%d%n", a, m.lastCycle, a, m.size);
+	    out.printf(Locale.ROOT, "%s,grants,%d%n%s,blocks,%d%n%s,releases,%d%n%s,aborts,%d%n", a, m.total(m.grants), a, m.total(m.blocks),
+		       a, m.total(m.releases), a, m.total(m.aborts));
+	    out.printf(Locale.ROOT, "%s,blocked_max,%d%n%s,blocked_mean,%.4f%n", a, m.maxBlocked, a, m.getMeanBlocked());
+	    for(int r = 1; r <= m.numOfResources; r++){
+		out.printf(Locale.ROOT, "%s,utilization_r%d,%.4f%n", a, r, m.getUtilization(r));
+	    }
+	    out.printf(Locale.ROOT, "%s,issafe_count,%d%n%s,issafe_min_ns,%d%n%s,issafe_mean_ns,%.1f%n", a, h.getCount(), a, h.getMin(), a, h.getMean());
+	    out.printf(Locale.ROOT, "%s,issafe_p50_ns,%d%n%s,issafe_p90_ns,%d%n%s,issafe_p99_ns,%d%n%s,issafe_max_ns,%d%n", a, h.getPercentile(50),
+		       a, h.getPercentile(90), a, h.getPercentile(99), a, h.getMax());
+	    for(int b = 0; b < h.getNumOfBuckets(); b++){
+		if(h.getBucketCount(b) > 0){
+		    out.printf(Locale.ROOT, "%s,issafe_bucket_%d_%d_ns,%d%n", a, LatencyHistogram.bucketFrom(b), LatencyHistogram.bucketTo(b), h.getBucketCount(b));
+		}
+	    }
+	    if(m.fastPathHits > 0){
+		out.printf(Locale.ROOT, "%s,safety_fast_path,%d%n", a, m.fastPathHits);
+	    }
+	    if(m.hintHits + m.hintMisses > 0){
+		out.printf(Locale.ROOT, "%s,safety_hint_hits,%d%n%s,safety_hint_misses,%d%n%s,safety_hint_hit_rate,%.4f%n", a, m.hintHits, a, m.hintMisses,
+			   a, (double)m.hintHits / (m.hintHits + m.hintMisses));
+	    }
+	    if(m.cacheHits + m.cacheMisses > 0){
+		out.printf(Locale.ROOT, "%s,safety_cache_hits,%d%n%s,safety_cache_misses,%d%n", a, m.cacheHits, a, m.cacheMisses);
+	    }
+	}
+    }
+}//end_SimulationMetrics_class
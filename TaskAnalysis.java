@@ -0,0 +1,81 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Description: The resource types every task of an input uses, found before the Banker simulation
+ * splits the input into groups of tasks (see ResourceComponents). One pass over the activities of
+ * each task (the tasks are split over the fork/join pool) notes every resource type the task claims
+ * (initiate with a claim above 0), requests or releases.
+ *
+ * Nothing else is taken from the activities ahead: whether a claim or a request aborts a task depends
+ * on the units available and on the grants the task got, so the simulation decides every abort as the
+ * task reaches the activity.
+ */
+public class TaskAnalysis {
+    private static final int TASKS_PER_PART = 1024; //tasks analysed by one fork/join task
+
+    private final int numOfResources;
+    private final int[][] used; //resource types used by every task, in increasing order
+
+    /*
+     *Class constructor, analyses every task
+     *@param: activities: activities of every task (after ActivityStore.finish)
+     *@param: numOfTasks: number of tasks of the input
+     *@param: numOfResources: number of resource types of the input
+     */
+    public TaskAnalysis(final ActivityStore activities, int numOfTasks, int numOfResources){
+	this.numOfResources = numOfResources;
+	this.used = new int[numOfTasks][];
+	if(numOfTasks <= TASKS_PER_PART){
+	    analyse(activities, 1, numOfTasks);
+	    return;
+	}
+	ArrayList<ForkJoinTask<?>> parts = new ArrayList<ForkJoinTask<?>>();
+	for(int first = 1; first <= numOfTasks; first += TASKS_PER_PART){
+	    final int from = first;
+	    final int to = Math.min(numOfTasks, first + TASKS_PER_PART - 1);
+	    parts.add(ForkJoinTask.adapt(new Runnable(){
+		    public void run(){
+			analyse(activities, from, to);
+		    }
+		}));
+	}
+	ForkJoinTask.invokeAll(parts);
+    }
+
+    /* tasks from to to (task numbers), one pass over the activities of each */
+    private void analyse(ActivityStore activities, int from, int to){
+	boolean[] uses = new boolean[numOfResources];
+	for(int t = from; t <= to; t++){
+	    int count = 0;
+	    for(int a = activities.getStart(t); a < activities.getEnd(t); a++){
+		byte op = activities.getOpcode(a);
+		int r = activities.getResourceType(a) - 1;
+		if(op == Banker.COMPUTE || op == Banker.TERMINATE || r < 0 || r >= numOfResources){
+		    continue; //other resource types are errors of the input, seen by the simulation
+		}
+		if(!uses[r] && (op != Banker.INITIATE || activities.getUnits(a) > 0)){
+		    uses[r] = true;
+		    count++;
+		}
+	    }
+	    used[t-1] = new int[count];
+	    count = 0;
+	    for(int r = 0; r < numOfResources; r++){
+		if(uses[r]){
+		    used[t-1][count++] = r+1;
+		    uses[r] = false;
+		}
+	    }
+	}
+    }
+
+    /* getters */
+    public int getNumOfTasks(){
+	return this.used.length;
+    }
+    /* resource types task t claims, requests or releases, in increasing order */
+    public int[] getResourcesUsed(int taskNum){
+	return this.used[taskNum-1];
+    }
+}//end_TaskAnalysis_class
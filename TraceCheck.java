@@ -0,0 +1,153 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Description: Checks that the traces of a simulation (-Dbanker.trace=true) don't depend on the size
+ * of the ring buffer of EventTracer. Every input is simulated with a ring of -small records, in which
+ * the simulation keeps waiting for the flusher thread, and with a ring of -large records, and the
+ * FIFO and Banker trace files of both runs are compared byte for byte (TraceReader prints them the
+ * same). The check fails (exit status 1) on the first difference, printing the input and the first
+ * record that differs. Without inputs it generates some (see WorkloadGenerator).
+ *
+ * The inputs are copied to a temporary directory first, so no trace is left next to them.
+ *
+ * Usage: java TraceCheck [-small 8] [-large 65536] [-sizes 10,100,1000] [-seed 1] [inputs...]
+ *        (inputs are files, directories or globs as in -batch)
+ */
+public class TraceCheck {
+    private static final String[] POLICY_NAMES = {"FIFO", "Banker"};
+    private static int small = 8;
+    private static int large = 1 << 16;
+    private static int[] sizes = {10, 100, 1000}; //tasks of the generated inputs
+    private static long seed = 1;
+    private static ArrayList<String> inputs = new ArrayList<String>();
+
+    public static void main(String[] args) throws IOException {
+	parseArgs(args);
+	File dir = Files.createTempDirectory("banker-trace").toFile();
+	boolean trace = Banker.trace;
+	int traceBuffer = Banker.traceBuffer;
+	boolean ok = true;
+	try{
+	    ArrayList<File> copies = new ArrayList<File>();
+	    if(inputs.isEmpty()){
+		generateInputs(dir, copies);
+	    }
+	    for(int k = 0; k < inputs.size(); k++){
+		File copy = new File(dir, k + "-" + new File(inputs.get(k)).getName());
+		Files.copy(new File(inputs.get(k)).toPath(), copy.toPath());
+		copies.add(copy);
+	    }
+	    Banker.trace = true;
+	    for(File input : copies){
+		byte[][] expected = traces(input, large);
+		byte[][] output = traces(input, small);
+		for(int p = 0; p < POLICY_NAMES.length && ok; p++){
+		    if(!Arrays.equals(expected[p], output[p])){
+			System.out.println(input.getName() + ": the " + POLICY_NAMES[p] + " trace with a ring of " + small
+					   + " records differs from the one with " + large);
+			printFirstDifference(expected[p], output[p]);
+			ok = false;
+		    }
+		}
+		if(!ok){
+		    break;
+		}
+	    }
+	    if(ok){
+		System.out.println(copies.size() + " inputs: same traces with rings of " + small + " and " + large + " records");
+	    }
+	}
+	finally{
+	    Banker.trace = trace;
+	    Banker.traceBuffer = traceBuffer;
+	    for(File file : dir.listFiles()){
+		file.delete();
+	    }
+	    dir.delete();
+	}
+	System.exit(ok ? 0 : 1);
+    }
+
+    /* the FIFO and Banker trace files of a simulation with a ring of the given size */
+    private static byte[][] traces(File input, int ringRecords) throws IOException {
+	Banker.traceBuffer = ringRecords;
+	PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+	new Banker(discard).run(input.getPath());
+	byte[][] traces = new byte[POLICY_NAMES.length][];
+	for(int p = 0; p < POLICY_NAMES.length; p++){
+	    File file = new File(input.getPath() + "." + POLICY_NAMES[p] + ".trace");
+	    traces[p] = file.exists() ? Files.readAllBytes(file.toPath()) : new byte[0];
+	    file.delete();
+	}
+	return traces;
+    }
+
+    private static void printFirstDifference(byte[] expected, byte[] output){
+	int n = Math.min(expected.length, output.length);
+	int at = 0;
+	while(at < n && expected[at] == output[at]){
+	    at++;
+	}
+	if(at < EventTracer.HEADER_SIZE){
+	    System.out.println("  header differs");
+	    return;
+	}
+	int record = (at - EventTracer.HEADER_SIZE) / EventTracer.RECORD_SIZE;
+	System.out.println("  record " + (record+1) + " differs (" + (expected.length - EventTracer.HEADER_SIZE) / EventTracer.RECORD_SIZE
+			   + " and " + (output.length - EventTracer.HEADER_SIZE) / EventTracer.RECORD_SIZE + " records)");
+    }
+
+    /* one input of every size, with low and high contention */
+    private static void generateInputs(File dir, ArrayList<File> copies) throws IOException {
+	for(int size : sizes){
+	    for(double contention : new double[]{0.2, 0.9}){
+		File input = new File(dir, "generated-" + size + "-" + contention + ".txt");
+		new WorkloadGenerator(size, 4, 2.0, 5, contention, seed + size).write(input);
+		copies.add(input);
+	    }
+	}
+    }
+
+    private static void parseArgs(String[] args) throws IOException {
+	for(int i = 0; i < args.length; i++){
+	    if(!args[i].startsWith("-")){
+		ArrayList<String> files = Banker.batchInputs(args[i]);
+		if(files.isEmpty()){
+		    System.out.println("Error: no input file matches " + args[i]);
+		}
+		inputs.addAll(files);
+		continue;
+	    }
+	    if(i+1 == args.length){
+		throw new IllegalArgumentException("No value for option " + args[i]);
+	    }
+	    String value = args[++i];
+	    switch(args[i-1]){
+	    case "-small":
+		small = Integer.parseInt(value);
+		break;
+	    case "-large":
+		large = Integer.parseInt(value);
+		break;
+	    case "-sizes":
+		String[] parts = value.split(",");
+		sizes = new int[parts.length];
+		for(int k = 0; k < parts.length; k++){
+		    sizes[k] = Integer.parseInt(parts[k].trim());
+		}
+		break;
+	    case "-seed":
+		seed = Long.parseLong(value);
+		break;
+	    default:
+		throw new IllegalArgumentException("Unknown option " + args[i-1]);
+	    }
+	}
+    }
+}//end_TraceCheck_class
@@ -0,0 +1,72 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Description: Converts a binary trace written by EventTracer to text or CSV.
+ *
+ * Usage: java TraceReader traceFile [-csv]
+ */
+public class TraceReader {
+    public static void main(String[] args) throws IOException {
+	if(args.length < 1){
+	    System.out.println("Usage: java TraceReader traceFile [-csv]");
+	    return;
+	}
+	boolean csv = args.length > 1 && args[1].equals("-csv");
+	PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+	try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args[0]), 1 << 16))) {
+	    if(in.readInt() != EventTracer.MAGIC){
+		System.out.println("Error: " + args[0] + " is not a trace file");
+		return;
+	    }
+	    short version = in.readShort();
+	    short recordSize = in.readShort();
+	    int numOfTasks = in.readInt();
+	    int numOfResources = in.readInt();
+	    if(version != EventTracer.VERSION || recordSize != EventTracer.RECORD_SIZE){
+		System.out.println("Error: unsupported trace version " + version);
+		return;
+	    }
+	    if(csv){
+		out.println("cycle,algorithm,event,task,resource,units,value");
+	    }
+	    else{
+		out.println("Trace of " + numOfTasks + " tasks and " + numOfResources + " resource types");
+	    }
+	    while(true){
+		int cycle;
+		try{
+		    cycle = in.readInt();
+		}
+		catch(EOFException e){
+		    break;
+		}
+		byte event = in.readByte();
+		byte algorithm = in.readByte();
+		in.readShort();
+		int task = in.readInt();
+		int resource = in.readInt();
+		int units = in.readInt();
+		int value = in.readInt();
+		String eventName = (event >= 0 && event < EventTracer.EVENT_NAMES.length) ? EventTracer.EVENT_NAMES[event] : "event" + event;
+		String algorithmName = (algorithm >= 0 && algorithm < EventTracer.ALGORITHM_NAMES.length) ? EventTracer.ALGORITHM_NAMES[algorithm] : "?";
+		if(csv){
+		    out.println(cycle + "," + algorithmName + "," + eventName + "," + task + "," + resource + "," + units + "," + value);
+		}
+		else{
+		    out.printf("cycle %-8d %-7s %-14s task %-7d resource %-4d units %-7d value %d%n", cycle, algorithmName, eventName,
+			       task, resource, units, value);
+		}
+	    }
+	}
+	finally{
+	    out.flush();
+	}
+    }
+}//end_TraceReader_class
@@ -0,0 +1,139 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Description: Generates synthetic input files for the simulator (same format as the
+ * input files described in the spec). The same seed and parameters always give the same file.
+ *
+ * Parameters:
+ *   tasks         number of tasks
+ *   resources     number of resource types
+ *   claimSkew     claims are drawn as maxClaim * u^claimSkew (u uniform in [0,1)), values above 1
+ *                 give mostly small claims and a few large ones
+ *   computeLength compute activities take 1 to computeLength cycles
+ *   contention    between 0 and 1, how many units there are compared to the sum of all claims:
+ *                 0 means every claim can be granted at the same time, 1 means there are only
+ *                 as many units as the largest claim
+ *
+ * Claims never exceed the units present and requests never exceed the claims, so no task is
+ * aborted for its input; tasks are only aborted by deadlock handling.
+ */
+public class WorkloadGenerator {
+    private static final int MAX_CLAIM = 10;
+    private static final int ROUNDS = 3; //request, compute, release rounds per task
+
+    private int tasks;
+    private int resources;
+    private double claimSkew;
+    private int computeLength;
+    private double contention;
+    private long seed;
+
+    /* Class constructor */
+    public WorkloadGenerator(int tasks, int resources, double claimSkew, int computeLength, double contention, long seed){
+	this.tasks = tasks;
+	this.resources = resources;
+	this.claimSkew = claimSkew;
+	this.computeLength = computeLength;
+	this.contention = contention;
+	this.seed = seed;
+    }
+
+    /* getters */
+    public int getTasks(){
+	return this.tasks;
+    }
+    public int getResources(){
+	return this.resources;
+    }
+
+    /*
+     *Writes the generated input to a file
+     *@param: file to write, it is overwritten
+     */
+    public void write(File file) throws IOException {
+	Random rnd = new Random(seed);
+	int[][] claims = new int[tasks][resources];
+	long[] sumClaims = new long[resources];
+	int[] maxClaims = new int[resources];
+	for(int t = 0; t < tasks; t++){
+	    for(int r = 0; r < resources; r++){
+		int claim = (int)(MAX_CLAIM * Math.pow(rnd.nextDouble(), claimSkew));
+		claims[t][r] = claim;
+		sumClaims[r] += claim;
+		maxClaims[r] = Math.max(maxClaims[r], claim);
+	    }
+	}
+	int[] units = new int[resources];
+	for(int r = 0; r < resources; r++){
+	    long shared = (long)Math.ceil(sumClaims[r] * (1.0 - contention));
+	    units[r] = (int)Math.max(Math.max(maxClaims[r], 1), Math.min(shared, Integer.MAX_VALUE));
+	}
+
+	BufferedWriter out = new BufferedWriter(new FileWriter(file), 1 << 16);
+	try{
+	    out.write(tasks + " " + resources);
+	    for(int r = 0; r < resources; r++){
+		out.write(" " + units[r]);
+	    }
+	    out.newLine();
+	    int[] allocated = new int[resources];
+	    for(int t = 0; t < tasks; t++){
+		int taskNum = t+1;
+		for(int r = 0; r < resources; r++){
+		    activity(out, "initiate", taskNum, r+1, claims[t][r]);
+		    allocated[r] = 0;
+		}
+		for(int round = 0; round < ROUNDS; round++){
+		    int r = rnd.nextInt(resources);
+		    int room = claims[t][r] - allocated[r];
+		    if(room > 0){
+			int requested = 1 + rnd.nextInt(room);
+			activity(out, "request", taskNum, r+1, requested);
+			allocated[r] += requested;
+		    }
+		    activity(out, "compute", taskNum, 1 + rnd.nextInt(Math.max(computeLength, 1)), 0);
+		    if(allocated[r] > 0 && rnd.nextBoolean()){
+			int released = 1 + rnd.nextInt(allocated[r]);
+			activity(out, "release", taskNum, r+1, released);
+			allocated[r] -= released;
+		    }
+		}
+		for(int r = 0; r < resources; r++){
+		    if(allocated[r] > 0){
+			activity(out, "release", taskNum, r+1, allocated[r]);
+		    }
+		}
+		activity(out, "terminate", taskNum, 0, 0);
+	    }
+	}
+	finally{
+	    out.close();
+	}
+    }
+
+    private void activity(BufferedWriter out, String name, int taskNum, int resourceType, int units) throws IOException {
+	out.write(name);
+	out.write(' ');
+	out.write(Integer.toString(taskNum));
+	out.write(' ');
+	out.write(Integer.toString(resourceType));
+	out.write(' ');
+	out.write(Integer.toString(units));
+	out.newLine();
+    }
+
+    /* usage: java WorkloadGenerator tasks resources claimSkew computeLength contention seed outputFile */
+    public static void main(String[] args) throws IOException {
+	if(args.length < 7){
+	    System.out.println("Usage: java WorkloadGenerator tasks resources claimSkew computeLength contention seed outputFile");
+	    return;
+	}
+	WorkloadGenerator g = new WorkloadGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Double.parseDouble(args[2]),
+						    Integer.parseInt(args[3]), Double.parseDouble(args[4]), Long.parseLong(args[5]));
+	g.write(new File(args[6]));
+    }
+}//end_WorkloadGenerator_class
@@ -0,0 +1,47 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Description: SIMD version of RowKernel built on the JDK Vector API (incubator module).
+ * Rows are processed a full vector at a time (IntVector compare plus allTrue, vector add),
+ * the elements left over are done one by one.
+ *
+ * It is not compiled with the other classes since it needs the incubator module:
+ *   javac --add-modules jdk.incubator.vector -cp . -d . vector/VectorRowKernel.java
+ *   java --add-modules jdk.incubator.vector Banker inputFileName.txt
+ * RowKernel.get() loads it when the module is present, otherwise the scalar kernel is used.
+ */
+public class VectorRowKernel extends RowKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    public String getName(){
+	return "vector" + SPECIES.length();
+    }
+
+    public boolean fits(int[] row, int offset, int[] work, int length){
+	int r = 0;
+	for(int bound = SPECIES.loopBound(length); r < bound; r += SPECIES.length()){
+	    IntVector need = IntVector.fromArray(SPECIES, row, offset+r);
+	    if(!need.compare(VectorOperators.LE, IntVector.fromArray(SPECIES, work, r)).allTrue()){
+		return false;
+	    }
+	}
+	for(; r < length; r++){
+	    if(row[offset+r] > work[r]){
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    public void add(int[] sums, int[] row, int offset, int length){
+	int r = 0;
+	for(int bound = SPECIES.loopBound(length); r < bound; r += SPECIES.length()){
+	    IntVector.fromArray(SPECIES, sums, r).add(IntVector.fromArray(SPECIES, row, offset+r)).intoArray(sums, r);
+	}
+	for(; r < length; r++){
+	    sums[r] += row[offset+r];
+	}
+    }
+}//end_VectorRowKernel_class